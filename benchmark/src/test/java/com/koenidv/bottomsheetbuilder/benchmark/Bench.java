@@ -0,0 +1,162 @@
+package com.koenidv.bottomsheetbuilder.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A minimal benchmark harness for code that needs Robolectric's Android environment,
+ * which JMH can't provide. Every iteration is measured separately for time and allocated bytes.
+ * Results are written in the JSON format of JMH, so the same tooling can read them
+ */
+final class Bench {
+
+    private static final int WARMUP_ITERATIONS = 20;
+
+    private final String mSuite;
+    private final List<Result> mResults = new ArrayList<>();
+
+    Bench(String suite) {
+        mSuite = suite;
+    }
+
+    /**
+     * A benchmarked operation. Only {@link #run(Object)} is measured
+     */
+    abstract static class Case<T> {
+        abstract T setUp();
+
+        abstract void run(T state);
+
+        void tearDown(T state) {
+        }
+    }
+
+    /**
+     * Warms up and measures a case
+     *
+     * @param name       The name of the benchmark
+     * @param params     Pairs of parameter names and values, e.g. "items", "100"
+     * @param iterations The number of measured iterations
+     */
+    <T> void measure(String name, String[] params, int iterations, Case<T> benchmarkCase) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            T state = benchmarkCase.setUp();
+            benchmarkCase.run(state);
+            benchmarkCase.tearDown(state);
+        }
+
+        long[] times = new long[iterations];
+        long allocated = 0;
+        long gcCount = -gcCount();
+        for (int i = 0; i < iterations; i++) {
+            T state = benchmarkCase.setUp();
+            long bytesBefore = allocatedBytes();
+            long start = System.nanoTime();
+            benchmarkCase.run(state);
+            times[i] = System.nanoTime() - start;
+            allocated += allocatedBytes() - bytesBefore;
+            benchmarkCase.tearDown(state);
+        }
+        gcCount += gcCount();
+
+        Arrays.sort(times);
+        long sum = 0;
+        for (long time : times) sum += time;
+        Result result = new Result(mSuite + "." + name, params, iterations,
+                (double) sum / iterations, times[iterations / 2], times[iterations - 1],
+                allocatedBytes() < 0 ? -1 : (double) allocated / iterations, gcCount);
+        mResults.add(result);
+    }
+
+    /**
+     * Writes all results to [benchmark.outputDir]/[suite].json
+     */
+    void writeResults() throws IOException {
+        File dir = new File(System.getProperty("benchmark.outputDir", "build/benchmark-results"));
+        if (!dir.isDirectory() && !dir.mkdirs())
+            throw new IOException("Can't create " + dir);
+        Writer writer = new OutputStreamWriter(new FileOutputStream(new File(dir, mSuite + ".json")), "UTF-8");
+        try {
+            writer.write("[\n");
+            for (int i = 0; i < mResults.size(); i++) {
+                writer.write(mResults.get(i).toJson());
+                writer.write(i < mResults.size() - 1 ? ",\n" : "\n");
+            }
+            writer.write("]\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * @return The bytes allocated by the current thread so far, -1 if the JVM can't tell
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans())
+            count += Math.max(0, bean.getCollectionCount());
+        return count;
+    }
+
+    private static final class Result {
+        final String mName;
+        final String[] mParams;
+        final int mIterations;
+        final double mMeanNs;
+        final long mMedianNs;
+        final long mMaxNs;
+        final double mBytesPerOp;
+        final long mGcCount;
+
+        Result(String name, String[] params, int iterations, double meanNs, long medianNs, long maxNs,
+               double bytesPerOp, long gcCount) {
+            mName = name;
+            mParams = params;
+            mIterations = iterations;
+            mMeanNs = meanNs;
+            mMedianNs = medianNs;
+            mMaxNs = maxNs;
+            mBytesPerOp = bytesPerOp;
+            mGcCount = gcCount;
+        }
+
+        String toJson() {
+            StringBuilder params = new StringBuilder();
+            for (int i = 0; i + 1 < mParams.length; i += 2) {
+                if (params.length() > 0) params.append(", ");
+                params.append('"').append(mParams[i]).append("\": \"").append(mParams[i + 1]).append('"');
+            }
+            return String.format(Locale.ROOT, "  {\n"
+                            + "    \"benchmark\": \"%s\",\n"
+                            + "    \"mode\": \"avgt\",\n"
+                            + "    \"measurementIterations\": %d,\n"
+                            + "    \"params\": {%s},\n"
+                            + "    \"primaryMetric\": {\"score\": %.1f, \"scoreUnit\": \"ns/op\","
+                            + " \"scorePercentiles\": {\"50.0\": %d, \"100.0\": %d}},\n"
+                            + "    \"secondaryMetrics\": {\n"
+                            + "      \"gc.alloc.rate.norm\": {\"score\": %.1f, \"scoreUnit\": \"B/op\"},\n"
+                            + "      \"gc.count\": {\"score\": %d, \"scoreUnit\": \"counts\"}\n"
+                            + "    }\n"
+                            + "  }",
+                    mName, mIterations, params, mMeanNs, mMedianNs, mMaxNs, mBytesPerOp, mGcCount);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.koenidv.bottomsheetbuilder.benchmark;
+
+import android.os.Bundle;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+/**
+ * An empty Activity with a Material theme, as required by BottomSheetDialog
+ */
+public class BenchmarkActivity extends AppCompatActivity {
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        setTheme(com.google.android.material.R.style.Theme_MaterialComponents_Light);
+        super.onCreate(savedInstanceState);
+    }
+}
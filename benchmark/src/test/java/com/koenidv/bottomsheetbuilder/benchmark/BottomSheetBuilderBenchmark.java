@@ -0,0 +1,163 @@
+package com.koenidv.bottomsheetbuilder.benchmark;
+
+import android.app.Activity;
+import android.graphics.Color;
+
+import com.koenidv.bottomsheetbuilder.BottomSheetBuilder;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+/**
+ * Benchmarks for building and showing BottomSheets.
+ * Run with ./gradlew :benchmark:testDebugUnitTest
+ */
+@RunWith(RobolectricTestRunner.class)
+public class BottomSheetBuilderBenchmark {
+
+    private static final int[] ITEM_COUNTS = {10, 100, 1000};
+    private static final int ICON = android.R.drawable.ic_menu_delete;
+
+    private static final Bench sBench = new Bench("BottomSheetBuilder");
+
+    private Activity mActivity;
+
+    @Before
+    public void setUp() {
+        mActivity = Robolectric.setupActivity(BenchmarkActivity.class);
+    }
+
+    @AfterClass
+    public static void writeResults() throws Exception {
+        sBench.writeResults();
+    }
+
+    @Test
+    public void construct() {
+        sBench.measure("construct", new String[0], 200, new Bench.Case<Void>() {
+            @Override
+            Void setUp() {
+                return null;
+            }
+
+            @Override
+            void run(Void state) {
+                new BottomSheetBuilder(mActivity);
+            }
+        });
+    }
+
+    @Test
+    public void addItems() {
+        for (final int count : ITEM_COUNTS) {
+            final String[] strings = strings(count);
+            final int[] icons = icons(count);
+            sBench.measure("addItems", new String[]{"items", String.valueOf(count), "icons", "false"}, 50,
+                    new Bench.Case<BottomSheetBuilder>() {
+                        @Override
+                        BottomSheetBuilder setUp() {
+                            return new BottomSheetBuilder(mActivity);
+                        }
+
+                        @Override
+                        void run(BottomSheetBuilder builder) {
+                            builder.addItems(strings);
+                        }
+                    });
+            sBench.measure("addItems", new String[]{"items", String.valueOf(count), "icons", "true"}, 50,
+                    new Bench.Case<BottomSheetBuilder>() {
+                        @Override
+                        BottomSheetBuilder setUp() {
+                            return new BottomSheetBuilder(mActivity);
+                        }
+
+                        @Override
+                        void run(BottomSheetBuilder builder) {
+                            builder.addItems(strings, icons);
+                        }
+                    });
+        }
+    }
+
+    @Test
+    public void styleAllItems() {
+        for (final int count : ITEM_COUNTS) {
+            final String[] strings = strings(count);
+            sBench.measure("setIcon", new String[]{"items", String.valueOf(count)}, 50,
+                    new Bench.Case<BottomSheetBuilder>() {
+                        @Override
+                        BottomSheetBuilder setUp() {
+                            return new BottomSheetBuilder(mActivity).addItems(strings);
+                        }
+
+                        @Override
+                        void run(BottomSheetBuilder builder) {
+                            builder.setIcon(ICON);
+                        }
+                    });
+            sBench.measure("setItemColor", new String[]{"items", String.valueOf(count)}, 50,
+                    new Bench.Case<BottomSheetBuilder>() {
+                        @Override
+                        BottomSheetBuilder setUp() {
+                            return new BottomSheetBuilder(mActivity).addItems(strings);
+                        }
+
+                        @Override
+                        void run(BottomSheetBuilder builder) {
+                            builder.setItemColor(Color.RED);
+                        }
+                    });
+        }
+    }
+
+    @Test
+    public void show() {
+        for (final int count : ITEM_COUNTS) {
+            measureShow(count, false);
+            measureShow(count, true);
+        }
+    }
+
+    private void measureShow(int count, final boolean virtualized) {
+        final String[] strings = strings(count);
+        final int[] icons = icons(count);
+        sBench.measure("show", new String[]{"items", String.valueOf(count), "virtualized", String.valueOf(virtualized)},
+                count >= 1000 ? 10 : 30, new Bench.Case<BottomSheetBuilder>() {
+                    @Override
+                    BottomSheetBuilder setUp() {
+                        return new BottomSheetBuilder(mActivity)
+                                .setTitle("Benchmark")
+                                .setVirtualized(virtualized)
+                                .addItems(strings, icons);
+                    }
+
+                    @Override
+                    void run(BottomSheetBuilder builder) {
+                        builder.show();
+                    }
+
+                    @Override
+                    void tearDown(BottomSheetBuilder builder) {
+                        builder.dismiss();
+                    }
+                });
+    }
+
+    private static String[] strings(int count) {
+        String[] strings = new String[count];
+        for (int i = 0; i < count; i++)
+            strings[i] = "Item " + i;
+        return strings;
+    }
+
+    private static int[] icons(int count) {
+        int[] icons = new int[count];
+        for (int i = 0; i < count; i++)
+            icons[i] = ICON;
+        return icons;
+    }
+}
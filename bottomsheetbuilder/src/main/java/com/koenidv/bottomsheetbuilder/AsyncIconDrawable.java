@@ -0,0 +1,92 @@
+package com.koenidv.bottomsheetbuilder;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+
+import androidx.annotation.NonNull;
+
+/**
+ * An icon loaded by {@link BitmapIconCache}, showing a round placeholder until its bitmap is ready.
+ * Its size never changes, so swapping in the bitmap only redraws the row instead of laying it out again
+ */
+final class AsyncIconDrawable extends Drawable {
+
+    private static final int PLACEHOLDER_ALPHA = 0x1F;
+
+    private final int mSize;
+    private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Paint mPlaceholderPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final RectF mPlaceholderBounds = new RectF();
+    private String mKey;
+    private Bitmap mBitmap;
+
+    /**
+     * @param size  The width and height in pixels
+     * @param color The color of the placeholder, it is shown translucent
+     */
+    AsyncIconDrawable(int size, int color) {
+        mSize = size;
+        mPlaceholderPaint.setColor((color & 0x00FFFFFF) | (PLACEHOLDER_ALPHA << 24));
+    }
+
+    /**
+     * Shows the placeholder until the bitmap for a new key is set
+     */
+    void setKey(String key) {
+        if (key.equals(mKey)) return;
+        mKey = key;
+        mBitmap = null;
+        invalidateSelf();
+    }
+
+    /**
+     * Sets the loaded bitmap, unless the drawable has been reused for another icon since it was requested
+     */
+    void setBitmap(String key, Bitmap bitmap) {
+        if (!key.equals(mKey) || bitmap == mBitmap) return;
+        mBitmap = bitmap;
+        invalidateSelf();
+    }
+
+    @Override
+    public void draw(@NonNull Canvas canvas) {
+        if (mBitmap != null) {
+            canvas.drawBitmap(mBitmap, null, getBounds(), mPaint);
+        } else {
+            mPlaceholderBounds.set(getBounds());
+            canvas.drawOval(mPlaceholderBounds, mPlaceholderPaint);
+        }
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        return mSize;
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return mSize;
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        mPaint.setAlpha(alpha);
+        invalidateSelf();
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter colorFilter) {
+        mPaint.setColorFilter(colorFilter);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+}
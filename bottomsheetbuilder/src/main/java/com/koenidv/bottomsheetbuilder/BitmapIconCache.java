@@ -0,0 +1,265 @@
+package com.koenidv.bottomsheetbuilder;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * App-wide cache for icons decoded from files and content URIs.
+ * Icons are decoded in the background and downsampled to exactly the size they are shown in.
+ * Decoded icons are kept in memory up to a number of bytes, and in a disk cache
+ * in the app's cache directory, so that they don't have to be decoded from the source again
+ */
+final class BitmapIconCache {
+
+    private static final int MAX_MEMORY_BYTES = (int) Math.min(Runtime.getRuntime().maxMemory() / 32, 8 * 1024 * 1024);
+    private static final long MAX_DISK_BYTES = 16 * 1024 * 1024;
+    private static final String DISK_CACHE_DIR = "bottomsheetbuilder-icons";
+
+    private static final LruCache<String, Bitmap> sIcons = new LruCache<String, Bitmap>(MAX_MEMORY_BYTES) {
+        @Override
+        protected int sizeOf(String key, Bitmap value) {
+            return value.getByteCount();
+        }
+    };
+    // Drawables waiting for an icon, so that every icon is only loaded once at a time
+    private static final Map<String, List<AsyncIconDrawable>> sPending = new HashMap<>();
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+    private static final Executor sExecutor = AsyncTask.THREAD_POOL_EXECUTOR;
+    private static final Object sDiskLock = new Object();
+
+    private BitmapIconCache() {
+    }
+
+    /**
+     * Loads an icon into a drawable, which shows a placeholder until it is loaded.
+     * Icons in the memory cache are set right away. Has to be called from the main thread
+     *
+     * @param uri    The URI of the image, e.g. a file or content URI
+     * @param size   The width and height the icon is shown in, in pixels
+     * @param target The drawable to show the icon in, it can be reused for another icon at any time
+     */
+    static void load(Context context, final String uri, final int size, AsyncIconDrawable target) {
+        final String key = size + ":" + uri;
+        target.setKey(key);
+        Bitmap icon = sIcons.get(key);
+        if (icon != null) {
+            target.setBitmap(key, icon);
+            return;
+        }
+        List<AsyncIconDrawable> pending = sPending.get(key);
+        if (pending != null) {
+            pending.add(target);
+            return;
+        }
+        pending = new ArrayList<>();
+        pending.add(target);
+        sPending.put(key, pending);
+        final Context appContext = context.getApplicationContext();
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                File file = getDiskFile(appContext, key);
+                Bitmap icon = readFromDisk(file);
+                if (icon == null) {
+                    icon = decode(appContext, uri, size);
+                    if (icon != null)
+                        writeToDisk(file, icon);
+                }
+                final Bitmap loaded = icon;
+                sMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onLoaded(key, loaded);
+                    }
+                });
+            }
+        });
+    }
+
+    private static void onLoaded(String key, Bitmap icon) {
+        List<AsyncIconDrawable> targets = sPending.remove(key);
+        if (icon == null) {
+            Log.e("BottomSheetBuilder: ", "Can't load icon " + key.substring(key.indexOf(':') + 1));
+            return;
+        }
+        sIcons.put(key, icon);
+        if (targets == null) return;
+        for (AsyncIconDrawable target : targets)
+            target.setBitmap(key, icon);
+    }
+
+    /**
+     * Drops all icons from memory, e.g. when the system is low on memory. The disk cache is kept
+     */
+    static void clear() {
+        sIcons.evictAll();
+    }
+
+    /**
+     * Decodes an image, downsampled while decoding and then scaled and center-cropped to the icon size
+     *
+     * @return The icon, or null if the image can't be read
+     */
+    private static Bitmap decode(Context context, String uri, int size) {
+        ContentResolver resolver = context.getContentResolver();
+        Uri parsed = Uri.parse(uri);
+        try {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            decodeStream(resolver, parsed, options);
+            if (options.outWidth <= 0 || options.outHeight <= 0)
+                return null;
+            options.inSampleSize = getSampleSize(options.outWidth, options.outHeight, size);
+            options.inJustDecodeBounds = false;
+            Bitmap sampled = decodeStream(resolver, parsed, options);
+            if (sampled == null)
+                return null;
+            Bitmap icon = cropToSize(sampled, size);
+            if (icon != sampled)
+                sampled.recycle();
+            return icon;
+        } catch (IOException | SecurityException e) {
+            return null;
+        }
+    }
+
+    private static Bitmap decodeStream(ContentResolver resolver, Uri uri, BitmapFactory.Options options)
+            throws IOException {
+        InputStream in = resolver.openInputStream(uri);
+        if (in == null)
+            return null;
+        try {
+            return BitmapFactory.decodeStream(in, null, options);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @return The largest power of two that keeps the shorter side of the image at least as large as the icon
+     */
+    static int getSampleSize(int width, int height, int size) {
+        int sampleSize = 1;
+        while (Math.min(width, height) / (sampleSize * 2) >= size)
+            sampleSize *= 2;
+        return sampleSize;
+    }
+
+    private static Bitmap cropToSize(Bitmap bitmap, int size) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        if (width == size && height == size)
+            return bitmap;
+        float scale = (float) size / Math.min(width, height);
+        Matrix matrix = new Matrix();
+        matrix.setScale(scale, scale);
+        matrix.postTranslate((size - width * scale) / 2f, (size - height * scale) / 2f);
+        Bitmap icon = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        new Canvas(icon).drawBitmap(bitmap, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+        return icon;
+    }
+
+
+    /*
+     *
+     * Disk cache
+     *
+     */
+
+    private static File getDiskFile(Context context, String key) {
+        return new File(new File(context.getCacheDir(), DISK_CACHE_DIR), hash(key) + ".png");
+    }
+
+    private static Bitmap readFromDisk(File file) {
+        synchronized (sDiskLock) {
+            if (!file.isFile())
+                return null;
+            // The modification time is the last use, the least recently used icons are removed first
+            file.setLastModified(System.currentTimeMillis());
+        }
+        return BitmapFactory.decodeFile(file.getPath());
+    }
+
+    private static void writeToDisk(File file, Bitmap icon) {
+        File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs())
+            return;
+        File temp = new File(dir, file.getName() + ".tmp" + Thread.currentThread().getId());
+        try {
+            OutputStream out = new FileOutputStream(temp);
+            try {
+                icon.compress(Bitmap.CompressFormat.PNG, 100, out);
+            } finally {
+                out.close();
+            }
+            synchronized (sDiskLock) {
+                if (!temp.renameTo(file))
+                    temp.delete();
+                trimDisk(dir);
+            }
+        } catch (IOException e) {
+            temp.delete();
+        }
+    }
+
+    /**
+     * Removes the least recently used icons until the disk cache fits its maximum size
+     */
+    private static void trimDisk(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        long size = 0;
+        for (File file : files)
+            size += file.length();
+        if (size <= MAX_DISK_BYTES) return;
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long difference = a.lastModified() - b.lastModified();
+                return difference < 0 ? -1 : difference > 0 ? 1 : 0;
+            }
+        });
+        for (int i = 0; i < files.length && size > MAX_DISK_BYTES; i++) {
+            size -= files[i].length();
+            files[i].delete();
+        }
+    }
+
+    private static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes("UTF-8"));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest)
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException | IOException e) {
+            return Integer.toHexString(key.hashCode());
+        }
+    }
+}
@@ -1,39 +1,54 @@
 package com.koenidv.bottomsheetbuilder;
 
 import android.content.Context;
-import android.content.DialogInterface;
-import android.content.res.ColorStateList;
-import android.graphics.drawable.Drawable;
-import android.os.Build;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.util.Log;
-import android.util.TypedValue;
-import android.view.Gravity;
 import android.view.View;
-import android.widget.LinearLayout;
-import android.widget.TextView;
 
-import com.google.android.material.bottomsheet.BottomSheetDialog;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import androidx.annotation.ColorInt;
 import androidx.annotation.DrawableRes;
+import androidx.annotation.MenuRes;
 import androidx.annotation.NonNull;
 import androidx.annotation.StringRes;
 import androidx.annotation.StyleRes;
-import androidx.core.graphics.drawable.DrawableCompat;
+import androidx.fragment.app.FragmentManager;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.OnLifecycleEvent;
+import androidx.recyclerview.widget.DiffUtil;
 
 //  Created by koenidv on 21.01.2019.
 
 @SuppressWarnings({"unused", "UnusedReturnValue"})
 public class BottomSheetBuilder {
 
-    private BottomSheetDialog mBottomSheet;
     private Context mContext;
     private int mSheetStyle = 0;
     private String mTag;
-    private LinearLayout mLayout;
-    private TextView titleTextView;
     private onItemClickListener mItemClickListener;
+    private onItemIdClickListener mItemIdClickListener;
+    private onItemsSelectedListener mItemsSelectedListener;
     private onSheetDismissedListener mDismissedListener;
+    private onMetricsListener mMetricsListener;
+    private static onMetricsListener sDefaultMetricsListener;
+
+    private final SheetItems mItems = new SheetItems();
+    private String mTitle;
+    @StringRes
+    private int mTitleRes = 0;
+    @StyleRes
+    private int mTitleStyle = android.R.style.TextAppearance_DeviceDefault_Medium;
+    private Integer mTitleColor;
 
     private int mItemHeight;
     private int mItemPadding;
@@ -41,7 +56,29 @@ public class BottomSheetBuilder {
     private int mDefaultColor = 0;
     private int mDefaultIcon = 0;
 
-    private Boolean mDismissedByAction = false;
+    private boolean mVirtualized = false;
+    private boolean mFlat = false;
+    private boolean mMultiSelect = false;
+    private int mGridColumns = 0;
+    private boolean mIconAtlas = false;
+    private PagedItems mPagedItems;
+    private Executor mSearchExecutor;
+    private boolean mPrecomputeText = false;
+
+    // Dialog and views, only created in show() or prewarm()
+    private PreparedSheet mSheet;
+    private PreparedSheet mPrewarmed;
+    private boolean mPrewarmHit = false;
+    private boolean mPreparing = false;
+
+    // Set once the LifecycleOwner this builder is bound to has been destroyed
+    private Lifecycle mLifecycle;
+    private LifecycleObserver mLifecycleObserver;
+    private boolean mReleased = false;
+
+    // Rows changed since they have last been bound, applied when no batch is open
+    private final BitSet mDirtyRows = new BitSet();
+    private int mBatchDepth = 0;
 
 
     /**
@@ -71,8 +108,8 @@ public class BottomSheetBuilder {
      * @param tag     Sets the tag so that the BottomSheet can be recognized later
      */
     public BottomSheetBuilder(@NonNull Context context, String tag) {
-        setup(context);
         mTag = tag;
+        setup(context);
     }
 
     /**
@@ -83,36 +120,29 @@ public class BottomSheetBuilder {
      * @param tag     Sets the tag so that the BottomSheet can be recognized later
      */
     public BottomSheetBuilder(@NonNull Context context, @StyleRes int style, String tag) {
+        mTag = tag;
         setup(context);
         mSheetStyle = style;
-        mTag = tag;
     }
 
     /**
-     * Basic set-up. Creates a LinearLayout,
-     * default height and padding and adds the title to the Layout
+     * Basic set-up. Sets the default height, padding and color,
+     * as resolved once per theme by {@link StyleCache}.
+     * No views are created until {@link #show()}
      *
      * @param context The context to use
      */
     private void setup(Context context) {
+        mMetricsListener = sDefaultMetricsListener;
+        long start = mMetricsListener != null ? System.nanoTime() : 0;
         mContext = context;
-        mLayout = new LinearLayout(mContext);
-        mLayout.setOrientation(LinearLayout.VERTICAL);
-
-        mItemHeight = (int) (48 * mContext.getResources().getDisplayMetrics().density + 0.5f);
-        mItemPadding = (int) (16 * mContext.getResources().getDisplayMetrics().density + 0.5f);
+        StyleCache.Style style = StyleCache.get(context);
+        mItemHeight = style.mItemHeight;
+        mItemPadding = style.mItemPadding;
         mDrawablePadding = mItemPadding;
-        mDefaultColor = mContext.getResources().getColor(android.R.color.primary_text_light);
-
-        titleTextView = new TextView(mContext);
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            titleTextView.setTextAppearance(android.R.style.TextAppearance_DeviceDefault_Medium);
-        } else {
-            titleTextView.setTextAppearance(mContext, android.R.style.TextAppearance_DeviceDefault_Medium);
-        }
-        titleTextView.setGravity(Gravity.CENTER_VERTICAL);
-        titleTextView.setVisibility(View.GONE);
-        mLayout.addView(titleTextView);
+        mDefaultColor = style.mDefaultColor;
+        if (mMetricsListener != null)
+            mMetricsListener.onSetup(mTag, System.nanoTime() - start);
     }
 
     /*
@@ -127,12 +157,9 @@ public class BottomSheetBuilder {
      * @param text The text to display
      */
     public BottomSheetBuilder setTitle(String text) {
-        if (text == null) {
-            titleTextView.setVisibility(View.GONE);
-        } else {
-            titleTextView.setVisibility(View.VISIBLE);
-            titleTextView.setText(text);
-        }
+        mTitle = text;
+        mTitleRes = 0;
+        discardPrewarmed();
         return this;
     }
 
@@ -142,7 +169,9 @@ public class BottomSheetBuilder {
      * @param stringRes A string resource ID
      */
     public BottomSheetBuilder setTitle(@StringRes int stringRes) {
-        titleTextView.setText(stringRes);
+        mTitle = null;
+        mTitleRes = stringRes;
+        discardPrewarmed();
         return this;
     }
 
@@ -155,11 +184,7 @@ public class BottomSheetBuilder {
      */
     public BottomSheetBuilder setTitle(String text, int style) {
         setTitle(text);
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            titleTextView.setTextAppearance(style);
-        } else {
-            titleTextView.setTextAppearance(mContext, style);
-        }
+        mTitleStyle = style;
         return this;
     }
 
@@ -169,7 +194,8 @@ public class BottomSheetBuilder {
      * @param color A color (not color resource)
      */
     public BottomSheetBuilder setTitleColor(@ColorInt int color) {
-        titleTextView.setTextColor(color);
+        mTitleColor = color;
+        discardPrewarmed();
         return this;
     }
 
@@ -182,100 +208,37 @@ public class BottomSheetBuilder {
 
 
     /**
-     * Create a pre-formatted TextView
+     * Adds an item to the model. A prewarmed sheet doesn't have a row for it,
+     * so it is discarded
+     *
+     * @param text    The text, or null if it is a resource
+     * @param textRes The text's resource id, resolved only when it is needed
+     * @return The position of the new item
      */
-    private TextView createItem(String text) {
-        final TextView itemTextView = new TextView(mContext);
-        itemTextView.setText(text);
-        itemTextView.setPadding(mItemPadding, 0, mItemPadding, 0);
-        itemTextView.setCompoundDrawablePadding(mDrawablePadding);
-        itemTextView.setGravity(Gravity.CENTER_VERTICAL);
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            titleTextView.setTextAppearance(android.R.style.TextAppearance_DeviceDefault_Widget_PopupMenu);
-        } else {
-            titleTextView.setTextAppearance(mContext, android.R.style.TextAppearance_DeviceDefault_Widget_PopupMenu);
-        }
-        itemTextView.setTextColor(mDefaultColor);
-        TypedValue outValue = new TypedValue();
-        mContext.getTheme().resolveAttribute(android.R.attr.selectableItemBackground,
-                outValue, true);
-        itemTextView.setBackgroundResource(outValue.resourceId);
-        itemTextView.setId(mLayout.getChildCount() - 1);
-        itemTextView.setOnClickListener(new View.OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                if (mItemClickListener != null) {
-                    mItemClickListener.onItemClicked(v, itemTextView.getId(), mTag);
-                    assert mBottomSheet != null;
-                    mDismissedByAction = true;
-                    mBottomSheet.dismiss();
-                }
-            }
-        });
-
-        if (mDefaultIcon != 0) {
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
-                itemTextView.setCompoundDrawablesRelativeWithIntrinsicBounds(mDefaultIcon, 0, 0, 0);
-            } else {
-                itemTextView.setCompoundDrawablesWithIntrinsicBounds(mDefaultIcon, 0, 0, 0);
-            }
-        }
-
-        return itemTextView;
+    private int addToItems(String text, @StringRes int textRes, @DrawableRes int icon, @ColorInt int color) {
+        discardPrewarmed();
+        return mItems.add(text, textRes, icon, color);
     }
 
     /**
-     * Create a pre-formatted TextView with an icon
+     * Adds an item with an icon to the list of items.
+     * The default icon, if set by {@link #setIcon(int, int...)}, is used instead
+     *
+     * @param text        The text, or null if it is a resource
+     * @param textRes     The text's resource id, resolved only when it is needed
+     * @param drawableRes The icon, 0 for none
+     * @return The position of the new item
      */
-    private TextView createItem(String text, @DrawableRes int drawableRes) {
-        TextView itemTextView = createItem(text);
-        if (mDefaultIcon == 0) {
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                itemTextView.setCompoundDrawablesRelativeWithIntrinsicBounds(drawableRes, 0, 0, 0);
-                itemTextView.setCompoundDrawableTintList(new ColorStateList(new int[][]{new int[]{android.R.attr.state_enabled}}, new int[]{mDefaultColor}));
-            } else {
-                Drawable normalDrawable;
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-                    normalDrawable = mContext.getDrawable(drawableRes);
-                } else {
-                    normalDrawable = mContext.getResources().getDrawable(drawableRes);
-                }
-                assert normalDrawable != null;
-                Drawable wrapDrawable = DrawableCompat.wrap(normalDrawable);
-                DrawableCompat.setTint(wrapDrawable, mDefaultColor);
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
-                    itemTextView.setCompoundDrawablesRelative(wrapDrawable, null, null, null);
-                } else {
-                    itemTextView.setCompoundDrawables(wrapDrawable, null, null, null);
-                }
-            }
-        } else {
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                itemTextView.setCompoundDrawablesRelativeWithIntrinsicBounds(mDefaultIcon, 0, 0, 0);
-                itemTextView.setCompoundDrawableTintList(new ColorStateList(new int[][]{new int[]{android.R.attr.state_enabled}}, new int[]{mDefaultColor}));
-            } else {
-                Drawable normalDrawable;
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-                    normalDrawable = mContext.getDrawable(mDefaultIcon);
-                } else {
-                    normalDrawable = mContext.getResources().getDrawable(mDefaultIcon);
-                }
-                assert normalDrawable != null;
-                Drawable wrapDrawable = DrawableCompat.wrap(normalDrawable);
-                DrawableCompat.setTint(wrapDrawable, mDefaultColor);
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
-                    itemTextView.setCompoundDrawablesRelative(wrapDrawable, null, null, null);
-                } else {
-                    itemTextView.setCompoundDrawables(wrapDrawable, null, null, null);
-                }
-            }
+    private int appendItem(String text, @StringRes int textRes, @DrawableRes int drawableRes) {
+        int position = addToItems(text, textRes, mDefaultIcon != 0 ? mDefaultIcon : drawableRes, mDefaultColor);
+        if (mDefaultIcon != 0 && drawableRes != 0) {
             if (mTag != null) {
                 Log.d("BottomSheetBuilder: " + mTag + ": ", "Applying default icon, as set by setIcon(int). Can be overridden by setIcon(int, int position).");
             } else {
                 Log.d("BottomSheetBuilder: ", "Applying default icon, as set by setIcon(int). Can be overridden by setIcon(int, int position).");
             }
         }
-        return itemTextView;
+        return position;
     }
 
     /**
@@ -285,7 +248,7 @@ public class BottomSheetBuilder {
      */
     public BottomSheetBuilder addItems(String... text) {
         for (String thisText : text)
-            mLayout.addView(createItem(thisText));
+            appendItem(thisText, 0, 0);
         return this;
     }
 
@@ -296,7 +259,7 @@ public class BottomSheetBuilder {
      */
     public BottomSheetBuilder addItems(@StringRes int... stringRes) {
         for (int thisStringRes : stringRes)
-            mLayout.addView(createItem(mContext.getString(thisStringRes)));
+            appendItem(null, thisStringRes, 0);
         return this;
     }
 
@@ -314,11 +277,11 @@ public class BottomSheetBuilder {
                 Log.e("BottomSheetBuilder: ", "Showing items without icons: Not enough icons specified.\nYou have to specify an icon for every String.\nTo add items without icons after items with icons, you can simply call addItems(String) again.");
             }
             for (String string : strings) {
-                mLayout.addView(createItem(string));
+                appendItem(string, 0, 0);
             }
         } else {
             for (int i = 0; i < strings.length; i++) {
-                mLayout.addView(createItem(strings[i], icons[i]));
+                appendItem(strings[i], 0, icons[i]);
             }
         }
         return this;
@@ -338,16 +301,28 @@ public class BottomSheetBuilder {
                 Log.e("BottomSheetBuilder: ", "Showing items without icons: Not enough icons specified.\nYou have to specify an icon for every String.\nTo add items without icons after items with icons, you can simply call addItems(String) again.");
             }
             for (int stringRe : stringRes) {
-                mLayout.addView(createItem(mContext.getString(stringRe)));
+                appendItem(null, stringRe, 0);
             }
         } else {
             for (int i = 0; i < stringRes.length; i++) {
-                mLayout.addView(createItem(mContext.getString(stringRes[i]), icons[i]));
+                appendItem(null, stringRes[i], icons[i]);
             }
         }
         return this;
     }
 
+    /**
+     * Add an item with an icon loaded from an image, see {@link #setIcon(Uri, int...)}
+     *
+     * @param text The text to display
+     * @param icon The URI of the image
+     */
+    public BottomSheetBuilder addItem(String text, @NonNull Uri icon) {
+        int position = addToItems(text, 0, 0, mDefaultColor);
+        mItems.setIconUri(position, icon.toString());
+        return this;
+    }
+
     /**
      * Add an item with a specific text color
      *
@@ -355,9 +330,7 @@ public class BottomSheetBuilder {
      * @param color The text's color
      */
     public BottomSheetBuilder addItem(String text, @ColorInt int color) {
-        TextView itemTextView = createItem(text);
-        itemTextView.setTextColor(color);
-        mLayout.addView(itemTextView);
+        addToItems(text, 0, mDefaultIcon, color);
         return this;
     }
 
@@ -368,12 +341,112 @@ public class BottomSheetBuilder {
      * @param color     The text's color
      */
     public BottomSheetBuilder addItem(@StringRes int stringRes, @ColorInt int color) {
-        TextView itemTextView = createItem(mContext.getString(stringRes));
-        itemTextView.setTextColor(color);
-        mLayout.addView(itemTextView);
+        addToItems(null, stringRes, mDefaultIcon, color);
         return this;
     }
 
+    /**
+     * Add an item with a stable id, which is reported to an {@link onItemIdClickListener}
+     * no matter where the item ends up in the list
+     *
+     * @param id          The id of the item, must not be negative
+     * @param text        The text to display
+     * @param drawableRes The icon, 0 for none. The default icon, if set by {@link #setIcon(int, int...)}, is used instead
+     */
+    public BottomSheetBuilder addItem(long id, String text, @DrawableRes int drawableRes) {
+        if (id < 0)
+            throw new IllegalArgumentException("Item ids must not be negative");
+        int position = appendItem(text, 0, drawableRes);
+        mItems.setId(position, id);
+        return this;
+    }
+
+    /**
+     * Add an item with a stable id, which is reported to an {@link onItemIdClickListener}
+     * no matter where the item ends up in the list
+     *
+     * @param id          The id of the item, must not be negative
+     * @param stringRes   The resource Id of the item text
+     * @param drawableRes The icon, 0 for none. The default icon, if set by {@link #setIcon(int, int...)}, is used instead
+     */
+    public BottomSheetBuilder addItem(long id, @StringRes int stringRes, @DrawableRes int drawableRes) {
+        if (id < 0)
+            throw new IllegalArgumentException("Item ids must not be negative");
+        int position = appendItem(null, stringRes, drawableRes);
+        mItems.setId(position, id);
+        return this;
+    }
+
+    /**
+     * Starts a section with a header. All items added afterwards belong to it, until the next section is started.
+     * A BottomSheet with sections is always virtualized
+     *
+     * @param title The title of the section
+     */
+    public BottomSheetBuilder addSection(String title) {
+        mItems.addSection(title, 0);
+        discardPrewarmed();
+        return this;
+    }
+
+    /**
+     * Starts a section with a header
+     *
+     * @param titleRes The resource Id of the section title
+     */
+    public BottomSheetBuilder addSection(@StringRes int titleRes) {
+        mItems.addSection(null, titleRes);
+        discardPrewarmed();
+        return this;
+    }
+
+    /**
+     * Starts a section without a title, separated from the previous items by a divider
+     */
+    public BottomSheetBuilder addDivider() {
+        mItems.addSection(null, 0);
+        discardPrewarmed();
+        return this;
+    }
+
+    /**
+     * Adds the visible items of a menu resource, with their titles, icons and enabled states.
+     * The default icon, if set by {@link #setIcon(int, int...)}, is used instead of the menu's icons.
+     * Items of sub menus are not added.
+     * Menus are parsed once and cached, adding the same menu again doesn't read any XML
+     *
+     * @param menuRes The resource id of the menu
+     */
+    public BottomSheetBuilder addMenuItems(@MenuRes int menuRes) {
+        if (isReleased()) return this;
+        SheetItems menu = MenuCache.get(mContext, menuRes);
+        for (int i = 0; i < menu.size(); i++) {
+            int icon = menu.getIcon(i);
+            int position = addToItems(menu.getText(i), menu.getTextRes(i), mDefaultIcon != 0 ? mDefaultIcon : icon, mDefaultColor);
+            mItems.setId(position, menu.getId(i));
+            mItems.setFlag(position, SheetItems.FLAG_DISABLED, menu.hasFlag(i, SheetItems.FLAG_DISABLED));
+        }
+        return this;
+    }
+
+    /**
+     * Returns the id of an item, e.g. the menu item id of items added by {@link #addMenuItems(int)}
+     *
+     * @param position The position in the list of items
+     * @return The id, or -1 if the item doesn't have one
+     */
+    public long getItemId(int position) {
+        if (!mItems.contains(position)) {
+            if (mTag != null) {
+                Log.e("BottomSheetBuilder: " + mTag + ": ", "Can't get the id of a non-existent item.");
+            } else {
+                Log.e("BottomSheetBuilder: ", "Can't get the id of a non-existent item.");
+            }
+            return SheetItems.NO_ID;
+        }
+        return mItems.getId(position);
+    }
+
     /**
      * Sets the icon of a specific entry or entries
      *
@@ -382,41 +455,53 @@ public class BottomSheetBuilder {
      */
     public BottomSheetBuilder setIcon(@DrawableRes int icon, @NonNull int... positions) {
         if (positions.length == 0) {
-            for (int i = 1; i < mLayout.getChildCount(); i++) {
-                TextView itemTextView = (TextView) mLayout.getChildAt(i);
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                    itemTextView.setCompoundDrawablesRelativeWithIntrinsicBounds(icon, 0, 0, 0);
-                    itemTextView.setCompoundDrawableTintList(new ColorStateList(new int[][]{new int[]{android.R.attr.state_enabled}}, new int[]{mDefaultColor}));
+            for (int i = 0; i < mItems.size(); i++)
+                mItems.setIcon(i, icon);
+            mDirtyRows.set(0, mItems.size());
+            mDefaultIcon = icon;
+        } else {
+            for (int pos : positions) {
+                if (mItems.contains(pos)) {
+                    mItems.setIcon(pos, icon);
+                    mDirtyRows.set(pos);
+                } else if (mTag != null) {
+                    Log.e("BottomSheetBuilder: " + mTag + ": ", "Can't set the icon of a non-existent item.");
                 } else {
-                    Drawable normalDrawable = mContext.getResources().getDrawable(icon);
-                    Drawable wrapDrawable = DrawableCompat.wrap(normalDrawable);
-                    DrawableCompat.setTint(wrapDrawable, mDefaultColor);
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
-                        itemTextView.setCompoundDrawablesRelative(wrapDrawable, null, null, null);
-                    } else {
-                        itemTextView.setCompoundDrawables(wrapDrawable, null, null, null);
-                    }
+                    Log.e("BottomSheetBuilder: ", "Can't set the icon of a non-existent item.");
                 }
-                mDefaultIcon = icon;
             }
+        }
+        refreshRows();
+        return this;
+    }
+
+    /**
+     * Sets an icon loaded from an image, e.g. an app icon, a contact photo or a file.
+     * Images are decoded in the background, downsampled to the icon size and cached in memory and on disk.
+     * A placeholder is shown until the icon is loaded
+     *
+     * @param icon      The URI of the image, a file, content or android.resource URI
+     * @param positions Optional: The positions in the list of items
+     */
+    public BottomSheetBuilder setIcon(@NonNull Uri icon, @NonNull int... positions) {
+        String iconUri = icon.toString();
+        if (positions.length == 0) {
+            for (int i = 0; i < mItems.size(); i++)
+                mItems.setIconUri(i, iconUri);
+            mDirtyRows.set(0, mItems.size());
         } else {
             for (int pos : positions) {
-                TextView itemTextView = (TextView) mLayout.getChildAt(pos);
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                    itemTextView.setCompoundDrawablesRelativeWithIntrinsicBounds(icon, 0, 0, 0);
-                    itemTextView.setCompoundDrawableTintList(new ColorStateList(new int[][]{new int[]{android.R.attr.state_enabled}}, new int[]{mDefaultColor}));
+                if (mItems.contains(pos)) {
+                    mItems.setIconUri(pos, iconUri);
+                    mDirtyRows.set(pos);
+                } else if (mTag != null) {
+                    Log.e("BottomSheetBuilder: " + mTag + ": ", "Can't set the icon of a non-existent item.");
                 } else {
-                    Drawable normalDrawable = mContext.getResources().getDrawable(icon);
-                    Drawable wrapDrawable = DrawableCompat.wrap(normalDrawable);
-                    DrawableCompat.setTint(wrapDrawable, mDefaultColor);
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
-                        itemTextView.setCompoundDrawablesRelative(wrapDrawable, null, null, null);
-                    } else {
-                        itemTextView.setCompoundDrawables(wrapDrawable, null, null, null);
-                    }
+                    Log.e("BottomSheetBuilder: ", "Can't set the icon of a non-existent item.");
                 }
             }
         }
+        refreshRows();
         return this;
     }
 
@@ -428,65 +513,319 @@ public class BottomSheetBuilder {
      */
     public BottomSheetBuilder setItemColor(@ColorInt int color, int... positions) {
         if (positions.length == 0) {
-            for (int i = 1; i < mLayout.getChildCount(); i++) {
-                TextView itemTextView = (TextView) mLayout.getChildAt(i);
-                itemTextView.setTextColor(color);
+            for (int i = 0; i < mItems.size(); i++)
+                mItems.setColor(i, color);
+            mDirtyRows.set(0, mItems.size());
+            mDefaultColor = color;
+        } else {
+            for (int pos : positions) {
+                if (mItems.contains(pos)) {
+                    mItems.setColor(pos, color);
+                    mDirtyRows.set(pos);
+                } else if (mTag != null) {
+                    Log.e("BottomSheetBuilder: " + mTag + ": ", "Can't set the color of a non-existent item.");
+                } else {
+                    Log.e("BottomSheetBuilder: ", "Can't set the color of a non-existent item.");
+                }
+            }
+        }
+        refreshRows();
+        return this;
+    }
 
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                    itemTextView.setCompoundDrawableTintList(new ColorStateList(new int[][]{new int[]{android.R.attr.state_enabled}}, new int[]{color}));
+    /**
+     * Enables or disables items. Disabled items are greyed out and can't be clicked
+     *
+     * @param enabled   Whether the item(s) should be enabled, default is true
+     * @param positions Optional: The positions in the list of items
+     */
+    public BottomSheetBuilder setItemEnabled(boolean enabled, int... positions) {
+        if (positions.length == 0) {
+            for (int i = 0; i < mItems.size(); i++)
+                mItems.setFlag(i, SheetItems.FLAG_DISABLED, !enabled);
+            mDirtyRows.set(0, mItems.size());
+        } else {
+            for (int pos : positions) {
+                if (mItems.contains(pos)) {
+                    mItems.setFlag(pos, SheetItems.FLAG_DISABLED, !enabled);
+                    mDirtyRows.set(pos);
+                } else if (mTag != null) {
+                    Log.e("BottomSheetBuilder: " + mTag + ": ", "Can't enable or disable a non-existent item.");
                 } else {
-                    Drawable normalDrawable;
-                    if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.JELLY_BEAN_MR1) {
-                        normalDrawable = itemTextView.getCompoundDrawablesRelative()[0];
-                    } else {
-                        normalDrawable = itemTextView.getCompoundDrawables()[0];
-                    }
-                    Drawable wrapDrawable = DrawableCompat.wrap(normalDrawable);
-                    DrawableCompat.setTint(wrapDrawable, color);
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
-                        itemTextView.setCompoundDrawablesRelative(wrapDrawable, null, null, null);
-                    } else {
-                        itemTextView.setCompoundDrawables(wrapDrawable, null, null, null);
-                    }
+                    Log.e("BottomSheetBuilder: ", "Can't enable or disable a non-existent item.");
                 }
+            }
+        }
+        refreshRows();
+        return this;
+    }
 
-                mDefaultColor = color;
+    /**
+     * Replaces all items. If the BottomSheet is already showing, the new items are compared
+     * to the current ones by their ids and only inserted, removed, moved and changed rows are updated,
+     * without closing the BottomSheet.
+     * Ids should be unique, items with the same id are considered to be the same item.
+     * Selected items with an id stay selected, sections are removed
+     *
+     * @param items The new items
+     */
+    public BottomSheetBuilder updateItems(@NonNull List<BottomSheetItem> items) {
+        if (mPagedItems != null) {
+            if (mTag != null) {
+                Log.e("BottomSheetBuilder: " + mTag + ": ", "Can't update the items of a BottomSheet with an item source.");
+            } else {
+                Log.e("BottomSheetBuilder: ", "Can't update the items of a BottomSheet with an item source.");
             }
+            return this;
+        }
+        SheetItems newItems = new SheetItems();
+        for (BottomSheetItem item : items) {
+            int position = newItems.add(item.mText, item.mTextRes,
+                    mDefaultIcon != 0 ? mDefaultIcon : item.mIcon,
+                    item.mHasColor ? item.mColor : mDefaultColor);
+            newItems.setId(position, item.mId);
+            if (item.mIconUri != null)
+                newItems.setIconUri(position, item.mIconUri);
+            newItems.setFlag(position, SheetItems.FLAG_DISABLED, !item.mEnabled);
+        }
+        PreparedSheet sheet = mSheet != null ? mSheet : mPrewarmed;
+        if (sheet == null && mItems.getSelectedCount() == 0) {
+            mItems.replaceWith(newItems);
+            return this;
+        }
+        DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new ItemDiff(mItems, newItems));
+        int[] selected = mItems.getSelectedPositions();
+        mItems.replaceWith(newItems);
+        // Selected items stay selected wherever they have been moved
+        for (int position : selected) {
+            int newPosition = diff.convertOldPositionToNew(position);
+            if (newPosition != DiffUtil.DiffResult.NO_POSITION)
+                mItems.setSelected(newPosition, true);
+        }
+        // Pending changes refer to the old positions, the diff updates every changed row anyway
+        mDirtyRows.clear();
+        if (sheet != null)
+            sheet.updateRows(diff);
+        return this;
+    }
+
+    /**
+     * Same as {@link #setItemSource(BottomSheetItemSource, Executor, int, int)},
+     * with pages of 50 items and up to 4 pages in memory
+     */
+    public BottomSheetBuilder setItemSource(@NonNull BottomSheetItemSource source, @NonNull Executor executor) {
+        return setItemSource(source, executor, 50, 4);
+    }
+
+    /**
+     * Loads the items page by page instead of adding them all beforehand.
+     * The first page is loaded right away, following pages are loaded when the user scrolls close to them.
+     * Pages that haven't been used recently are dropped from memory and loaded again if needed.
+     * The list is always virtualized, items added with addItems are not shown.
+     * Set the default icon and color before calling this
+     *
+     * @param source   The source to load the pages from
+     * @param executor The executor to load the pages on
+     * @param pageSize The number of items in a page
+     * @param maxPages The maximum number of pages kept in memory, at least 2
+     */
+    public BottomSheetBuilder setItemSource(@NonNull BottomSheetItemSource source, @NonNull Executor executor,
+                                            int pageSize, int maxPages) {
+        mPagedItems = new PagedItems(source, executor, Math.max(1, pageSize), Math.max(2, maxPages),
+                mDefaultIcon, mDefaultColor, mTag);
+        discardPrewarmed();
+        return this;
+    }
+
+    /**
+     * Draws all items in a single view instead of one view per item, which makes large menus
+     * faster to lay out and draw. Labels are limited to one line.
+     * Items are still accessible to accessibility services one by one.
+     * Not used if the list is virtualized, searchable, multi-select, sectioned, a grid
+     * or loaded from an item source
+     *
+     * @param flat Whether to draw all items in a single view, default is false
+     */
+    public BottomSheetBuilder setFlat(boolean flat) {
+        mFlat = flat;
+        discardPrewarmed();
+        return this;
+    }
+
+    /**
+     * Shows the items in a grid with their icons above their texts, like a share sheet.
+     * Section headers and dividers span all columns. The list is always virtualized
+     *
+     * @param columns The number of columns, 0 to show a list
+     */
+    public BottomSheetBuilder setGrid(int columns) {
+        mGridColumns = Math.max(0, columns);
+        discardPrewarmed();
+        return this;
+    }
+
+    /**
+     * Draws icon resources from an app-wide atlas of pre-rasterized icons.
+     * Every icon is inflated, tinted and rasterized once per density and color,
+     * so showing a BottomSheet doesn't parse or render any vector drawable.
+     * Icons are flattened and don't change with the state of their row, which suits most vector icons
+     *
+     * @param iconAtlas Whether to use the icon atlas, default is false
+     */
+    public BottomSheetBuilder setIconAtlas(boolean iconAtlas) {
+        mIconAtlas = iconAtlas;
+        discardPrewarmed();
+        return this;
+    }
+
+    /**
+     * Rasterizes icons into the app-wide atlas used by {@link #setIconAtlas(boolean)} ahead of time,
+     * e.g. in the background while the app starts. Can be called from any thread
+     *
+     * @param context The context to load the icons with, its density is used
+     * @param color   The color to tint the icons in
+     * @param icons   The resource ids of the icons
+     */
+    public static void prepareIconAtlas(@NonNull Context context, @ColorInt int color, @DrawableRes int... icons) {
+        for (int icon : icons)
+            IconAtlas.get(context, icon, color);
+    }
+
+    /**
+     * Lets the user check any number of items and confirm them with a button instead of
+     * picking a single item. The selected positions are delivered to an {@link onItemsSelectedListener}.
+     * The list is always virtualized, not available with an item source
+     *
+     * @param multiSelect Whether items can be checked, default is false
+     */
+    public BottomSheetBuilder setMultiSelect(boolean multiSelect) {
+        mMultiSelect = multiSelect;
+        discardPrewarmed();
+        return this;
+    }
+
+    /**
+     * Selects or deselects items of a multi-select sheet, even if it is already showing
+     *
+     * @param selected  Whether the item(s) should be selected, default is false
+     * @param positions Optional: The positions in the list of items. If none are given,
+     *                  all items except for disabled ones are changed
+     */
+    public BottomSheetBuilder setItemSelected(boolean selected, int... positions) {
+        if (positions.length == 0) {
+            mItems.setSelected(0, mItems.size(), selected, mDirtyRows);
         } else {
             for (int pos : positions) {
-                try {
-                    TextView itemTextView = (TextView) mLayout.getChildAt(pos + 1);
-                    itemTextView.setTextColor(color);
-
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                        itemTextView.setCompoundDrawableTintList(new ColorStateList(new int[][]{new int[]{android.R.attr.state_enabled}}, new int[]{color}));
-                    } else {
-                        Drawable normalDrawable;
-                        if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.JELLY_BEAN_MR1) {
-                            normalDrawable = itemTextView.getCompoundDrawablesRelative()[0];
-                        } else {
-                            normalDrawable = itemTextView.getCompoundDrawables()[0];
-                        }
-                        Drawable wrapDrawable = DrawableCompat.wrap(normalDrawable);
-                        DrawableCompat.setTint(wrapDrawable, color);
-                        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
-                            itemTextView.setCompoundDrawablesRelative(wrapDrawable, null, null, null);
-                        } else {
-                            itemTextView.setCompoundDrawables(wrapDrawable, null, null, null);
-                        }
-                    }
-                } catch (NullPointerException npe) {
-                    if (mTag != null) {
-                        Log.e("BottomSheetBuilder: " + mTag + ": ", "Can't set the color of a non-existent item.");
-                    } else {
-                        Log.e("BottomSheetBuilder: ", "Can't set the color of a non-existent item.");
+                if (mItems.contains(pos)) {
+                    if (mItems.isSelected(pos) != selected) {
+                        mItems.setSelected(pos, selected);
+                        mDirtyRows.set(pos);
                     }
+                } else if (mTag != null) {
+                    Log.e("BottomSheetBuilder: " + mTag + ": ", "Can't select a non-existent item.");
+                } else {
+                    Log.e("BottomSheetBuilder: ", "Can't select a non-existent item.");
                 }
             }
         }
+        refreshRows();
         return this;
     }
 
+    /**
+     * Selects or deselects the items currently shown, i.e. the items matching the search query
+     * of a searchable sheet, or all items if nothing is searched for
+     *
+     * @param selected Whether the items should be selected
+     */
+    public BottomSheetBuilder setShownItemsSelected(boolean selected) {
+        int[] shown = mSheet != null ? mSheet.getShownPositions() : null;
+        if (shown == null)
+            return setItemSelected(selected);
+        if (shown.length > 0)
+            setItemSelected(selected, shown);
+        return this;
+    }
+
+    /**
+     * Selects all unselected items and deselects all selected items of a multi-select sheet.
+     * Disabled items are left as they are
+     */
+    public BottomSheetBuilder invertSelection() {
+        mItems.invertSelection(mDirtyRows);
+        refreshRows();
+        return this;
+    }
+
+    /**
+     * @return The positions of the selected items in ascending order
+     */
+    public int[] getSelectedPositions() {
+        return mItems.getSelectedPositions();
+    }
+
+    /**
+     * Same as {@link #setSearchable(boolean, Executor)}, searching on {@link AsyncTask#THREAD_POOL_EXECUTOR}
+     */
+    public BottomSheetBuilder setSearchable(boolean searchable) {
+        return setSearchable(searchable, AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    /**
+     * Shows a search field below the title that filters the items by the beginnings of their words.
+     * The search index is built and queried in the background.
+     * The onItemClickListener still receives the position in the complete list of items.
+     * The list is always virtualized, not available with an item source
+     *
+     * @param searchable Whether to show the search field, default is false
+     * @param executor   The executor to build the index and search on
+     */
+    public BottomSheetBuilder setSearchable(boolean searchable, @NonNull Executor executor) {
+        mSearchExecutor = searchable ? executor : null;
+        discardPrewarmed();
+        return this;
+    }
+
+    /**
+     * Starts collecting changes to icons, colors and states instead of applying them one by one.
+     * Call {@link #commitBatch()} to apply all changes at once, every row is updated at most once.
+     * Batches can be nested, changes are applied when the outermost batch is committed
+     */
+    public BottomSheetBuilder beginBatch() {
+        mBatchDepth++;
+        return this;
+    }
+
+    /**
+     * Applies all changes since {@link #beginBatch()} to the rows of the BottomSheet,
+     * even if it is already showing
+     */
+    public BottomSheetBuilder commitBatch() {
+        if (mBatchDepth == 0) {
+            if (mTag != null) {
+                Log.e("BottomSheetBuilder: " + mTag + ": ", "commitBatch() called without beginBatch().");
+            } else {
+                Log.e("BottomSheetBuilder: ", "commitBatch() called without beginBatch().");
+            }
+            return this;
+        }
+        mBatchDepth--;
+        refreshRows();
+        return this;
+    }
+
+    /**
+     * Rebinds the changed rows if the BottomSheet has already been shown and no batch is open
+     */
+    private void refreshRows() {
+        if (mBatchDepth > 0) return;
+        if (mSheet != null)
+            mSheet.refreshRows(mDirtyRows);
+        else if (mPrewarmed != null)
+            mPrewarmed.refreshRows(mDirtyRows);
+        mDirtyRows.clear();
+    }
+
 
     /*
      *
@@ -499,11 +838,50 @@ public class BottomSheetBuilder {
         return this;
     }
 
+    /**
+     * Sets a listener that receives the id set by {@link #addItem(long, String, int)} as well as
+     * the position of a clicked item. Items without an id report -1
+     */
+    public BottomSheetBuilder setOnItemIdClickListener(onItemIdClickListener onItemIdClickListener) {
+        mItemIdClickListener = onItemIdClickListener;
+        return this;
+    }
+
+    /**
+     * Sets the listener receiving the selected items when the selection of a multi-select sheet is confirmed
+     */
+    public BottomSheetBuilder setOnItemsSelectedListener(onItemsSelectedListener onItemsSelectedListener) {
+        mItemsSelectedListener = onItemsSelectedListener;
+        return this;
+    }
+
     public BottomSheetBuilder setOnSheetDismissedListener(onSheetDismissedListener onSheetDismissedListener) {
         mDismissedListener = onSheetDismissedListener;
         return this;
     }
 
+    /**
+     * Sets a listener that receives timings and counts of this BottomSheet.
+     * Nothing is measured if no listener is set
+     *
+     * @param onMetricsListener The listener, null to stop measuring
+     */
+    public BottomSheetBuilder setOnMetricsListener(onMetricsListener onMetricsListener) {
+        mMetricsListener = onMetricsListener;
+        discardPrewarmed();
+        return this;
+    }
+
+    /**
+     * Sets a metrics listener for every BottomSheetBuilder created from now on.
+     * Unlike {@link #setOnMetricsListener(onMetricsListener)}, this includes the builder set-up
+     *
+     * @param onMetricsListener The listener, null to stop measuring
+     */
+    public static void setDefaultMetricsListener(onMetricsListener onMetricsListener) {
+        sDefaultMetricsListener = onMetricsListener;
+    }
+
 
     /*
      *
@@ -518,6 +896,31 @@ public class BottomSheetBuilder {
      */
     public BottomSheetBuilder setStyle(@StyleRes int style) {
         mSheetStyle = style;
+        discardPrewarmed();
+        return this;
+    }
+
+    /**
+     * Only creates views for the items that are currently visible.
+     * Recommended for sheets with many items
+     *
+     * @param virtualized Whether to use a virtualized list, default is false
+     */
+    public BottomSheetBuilder setVirtualized(boolean virtualized) {
+        mVirtualized = virtualized;
+        discardPrewarmed();
+        return this;
+    }
+
+    /**
+     * Measures the text layouts of the title and all items in the background.
+     * Only used by {@link #showAsync(Executor, onSheetReadyListener)}
+     *
+     * @param precompute Whether to precompute the text layouts, default is false
+     */
+    public BottomSheetBuilder setPrecomputeText(boolean precompute) {
+        mPrecomputeText = precompute;
+        discardPrewarmed();
         return this;
     }
 
@@ -528,6 +931,7 @@ public class BottomSheetBuilder {
      */
     public BottomSheetBuilder setTag(String tag) {
         mTag = tag;
+        discardPrewarmed();
         return this;
     }
 
@@ -537,7 +941,9 @@ public class BottomSheetBuilder {
      * @param height The height in dp, default is 48dp
      */
     public BottomSheetBuilder setItemHeight(int height) {
+        if (isReleased()) return this;
         mItemHeight = (int) (height * mContext.getResources().getDisplayMetrics().density + 0.5f);
+        discardPrewarmed();
         return this;
     }
 
@@ -548,6 +954,7 @@ public class BottomSheetBuilder {
      */
     public BottomSheetBuilder setItemHeightPx(int height) {
         mItemHeight = height;
+        discardPrewarmed();
         return this;
     }
 
@@ -557,7 +964,9 @@ public class BottomSheetBuilder {
      * @param padding The padding in dp, default is 16dp
      */
     public BottomSheetBuilder setItemPadding(int padding) {
+        if (isReleased()) return this;
         mItemPadding = (int) (padding * mContext.getResources().getDisplayMetrics().density + 0.5f);
+        discardPrewarmed();
         return this;
     }
 
@@ -568,6 +977,7 @@ public class BottomSheetBuilder {
      */
     public BottomSheetBuilder setItemPaddingPx(int padding) {
         mItemPadding = padding;
+        discardPrewarmed();
         return this;
     }
 
@@ -578,46 +988,321 @@ public class BottomSheetBuilder {
      *
      */
 
+    /**
+     * Creates an immutable {@link BottomSheetSpec} from the current state of this builder.
+     * The spec can be shown many times without being rebuilt.
+     * Listeners are not part of the spec, pass them to {@link BottomSheetSpec#show(Context,
+     * onItemClickListener, onItemIdClickListener, onItemsSelectedListener, onSheetDismissedListener, onMetricsListener)}
+     */
+    public BottomSheetSpec build() {
+        return createSpec(mItems.copy());
+    }
+
+    /**
+     * Creates a {@link BottomSheetFragment} that keeps its items, title and styling across configuration changes.
+     * Clicks and dismisses are reported to the listeners of this builder until the fragment is recreated,
+     * see {@link BottomSheetFragment} for receiving them afterwards.
+     * Items of an item source are not supported
+     *
+     * @throws IllegalStateException If an item source has been set
+     */
+    public BottomSheetFragment buildFragment() {
+        if (mPagedItems != null)
+            throw new IllegalStateException("Items of an item source can't be shown in a fragment");
+        return BottomSheetFragment.newInstance(createSpec(mItems))
+                .setOnItemClickListener(mItemClickListener)
+                .setOnItemIdClickListener(mItemIdClickListener)
+                .setOnItemsSelectedListener(mItemsSelectedListener)
+                .setOnSheetDismissedListener(mDismissedListener);
+    }
+
+    /**
+     * Shows the BottomSheet as a {@link BottomSheetFragment}, which survives configuration changes
+     *
+     * @param fragmentManager The FragmentManager of the Activity or parent fragment
+     * @throws IllegalStateException If an item source has been set
+     */
+    public void showAsFragment(@NonNull FragmentManager fragmentManager) {
+        buildFragment().show(fragmentManager, mTag != null ? mTag : "BottomSheetBuilder");
+    }
+
+    private BottomSheetSpec createSpec(SheetItems items) {
+        return new BottomSheetSpec(items, mTitle, mTitleRes, mTitleStyle, mTitleColor,
+                mSheetStyle, mTag, mItemHeight, mItemPadding, mDrawablePadding, mVirtualized, mFlat, mMultiSelect,
+                mGridColumns, mIconAtlas, mPagedItems, mSearchExecutor);
+    }
+
+    /**
+     * Creates the dialog and the item rows the next time the main thread is idle,
+     * so that {@link #show()} only has to show the dialog.
+     * Call this once the BottomSheet is set up, any later change to it discards the prepared dialog.
+     * Has to be called from the main thread
+     */
+    public BottomSheetBuilder prewarm() {
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                if (mSheet == null && mPrewarmed == null && !mReleased) {
+                    BottomSheetSpec spec = createSpec(mItems);
+                    mPrewarmed = new PreparedSheet(mContext, spec, spec.mItems,
+                            new RowFactory(mContext, spec), mMetricsListener);
+                }
+                return false;
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Drops the prewarmed sheet after a change to the builder, returning its dialog and rows to the pools
+     */
+    private void discardPrewarmed() {
+        if (mPrewarmed != null) {
+            mPrewarmed.discard();
+            mPrewarmed = null;
+        }
+    }
+
+    /**
+     * Creates BottomSheetDialogs for a context and style the next time the main thread is idle.
+     * Any BottomSheet shown later with the same context and style will use one of them.
+     * Has to be called from the main thread
+     *
+     * @param context The context the BottomSheets will be shown in
+     * @param style   The style of the BottomSheets, 0 for the default style
+     */
+    public static void prewarm(@NonNull Context context, @StyleRes int style) {
+        DialogPool.prewarm(context, style);
+    }
+
+    /**
+     * Rows of dismissed BottomSheets are kept and reused by following BottomSheets in the same Activity.
+     *
+     * @return How many rows have been taken from the pool so far
+     */
+    public static int getRowPoolHits() {
+        return RowPool.getHits();
+    }
+
+    /**
+     * @return How many rows have been created because the pool had none so far
+     */
+    public static int getRowPoolMisses() {
+        return RowPool.getMisses();
+    }
+
+    /**
+     * @return Whether the last call to {@link #show()} used a dialog
+     * prepared by {@link #prewarm()} or {@link #prewarm(Context, int)}
+     */
+    public boolean wasPrewarmed() {
+        return mPrewarmHit;
+    }
+
     /**
      * Show the BottomSheet
      */
     public void show() {
-        if (mLayout.getParent() == null) {
-            //Set the padding and height of the items
-            for (int child = 0; child < mLayout.getChildCount(); child++) {
-                ((TextView) mLayout.getChildAt(child)).setHeight(mItemHeight);
-                mLayout.getChildAt(child).setPadding(mItemPadding, 0, mItemPadding, 0);
-            }
-            mLayout.getChildAt(mLayout.getChildCount() - 1).setPadding(mItemPadding, 0, mItemPadding, mItemPadding / 2);
-            ((TextView) mLayout.getChildAt(mLayout.getChildCount() - 1)).setHeight(mItemHeight + mItemPadding / 2);
+        showSheet(null, null);
+    }
 
-            if (mSheetStyle != 0)
-                mBottomSheet = new BottomSheetDialog(mContext, mSheetStyle);
-            else
-                mBottomSheet = new BottomSheetDialog(mContext);
+    /**
+     * Shows the prewarmed sheet or creates a new one
+     *
+     * @param spec       Optional: The spec to create the sheet from, sharing this builder's items
+     * @param rowFactory Optional: A row factory that has been prepared for the spec
+     */
+    private void showSheet(BottomSheetSpec spec, RowFactory rowFactory) {
+        if (isReleased()) {
+            return;
+        } else if (mSheet == null) {
+            // Share the items with the sheet so that later changes can be applied
+            if (mPrewarmed != null) {
+                mSheet = mPrewarmed;
+                mPrewarmed = null;
+                mPrewarmHit = true;
+            } else {
+                if (spec == null) spec = createSpec(mItems);
+                if (rowFactory == null) rowFactory = new RowFactory(mContext, spec);
+                mSheet = new PreparedSheet(mContext, spec, spec.mItems, rowFactory, mMetricsListener);
+                mPrewarmHit = mSheet.isFromPool();
+            }
+            // A builder shows its sheet only once, its rows can be reused by other sheets afterwards
+            mSheet.setReleaseRowsOnDismiss(true);
+            mSheet.show(mItemClickListener, mItemIdClickListener, mItemsSelectedListener,
+                    mDismissedListener, mMetricsListener);
+        } else {
+            if (mTag != null) {
+                Log.e("BottomSheetBuilder: " + mTag + ": ", "The BottomSheetDialog is already shown");
+            } else {
+                Log.e("BottomSheetBuilder: ", "The BottomSheetDialog is already shown");
+            }
+        }
+    }
 
-            mBottomSheet.setContentView(mLayout);
-            mBottomSheet.setOnDismissListener(new DialogInterface.OnDismissListener() {
+    /**
+     * Shows the BottomSheet after loading its resources in the background.
+     * String resources are resolved and icons are loaded and tinted on the executor,
+     * as well as text layouts if {@link #setPrecomputeText(boolean)} is enabled.
+     * Only the views are created on the main thread.
+     * A prewarmed BottomSheet is shown right away, as its resources have already been loaded
+     *
+     * @param executor The executor to load the resources on
+     * @param listener Optional: Called on the main thread once the BottomSheet is shown
+     */
+    public void showAsync(@NonNull Executor executor, final onSheetReadyListener listener) {
+        if (isReleased()) {
+            return;
+        } else if (mSheet != null || mPreparing) {
+            if (mTag != null) {
+                Log.e("BottomSheetBuilder: " + mTag + ": ", "The BottomSheetDialog is already shown");
+            } else {
+                Log.e("BottomSheetBuilder: ", "The BottomSheetDialog is already shown");
+            }
+            return;
+        } else if (mPrewarmed != null) {
+            showSheet(null, null);
+            if (listener != null)
+                listener.onSheetReady(mTag);
+            return;
+        }
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        final Context context = mContext;
+        // The executor works on a copy, the builder's items may be read and changed meanwhile
+        final SheetItems prepared = mItems.copy();
+        final int count = prepared.size();
+        final BottomSheetSpec spec = createSpec(mItems);
+        final RowFactory rowFactory = new RowFactory(mContext, spec);
+        final PrecomputedTexts precomputedTexts = mPrecomputeText
+                ? PrecomputedTexts.create(rowFactory, spec) : null;
+        final String tag = mTag;
+        mPreparing = true;
+        try {
+            executor.execute(new Runnable() {
                 @Override
-                public void onDismiss(DialogInterface dialog) {
-                    if (mDismissedListener != null && !mDismissedByAction)
-                        mDismissedListener.onDismissed(mTag);
+                public void run() {
+                    boolean loaded = false;
+                    try {
+                        ResourcePreparer.prepare(context, prepared, count, spec.mIconAtlas);
+                        if (precomputedTexts != null)
+                            precomputedTexts.compute(context, prepared, count);
+                        loaded = true;
+                    } catch (RuntimeException e) {
+                        if (tag != null) {
+                            Log.e("BottomSheetBuilder: " + tag + ": ", "Can't load the resources in the background.", e);
+                        } else {
+                            Log.e("BottomSheetBuilder: ", "Can't load the resources in the background.", e);
+                        }
+                    } finally {
+                        // Always show the sheet, resources that haven't been loaded are loaded by the rows
+                        final boolean complete = loaded;
+                        mainHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                mPreparing = false;
+                                // The LifecycleOwner might have been destroyed in the meantime
+                                if (mReleased) return;
+                                if (complete) {
+                                    mItems.takeResolvedTexts(prepared);
+                                    rowFactory.setPrecomputedTexts(precomputedTexts);
+                                }
+                                showSheet(spec, rowFactory);
+                                if (listener != null)
+                                    listener.onSheetReady(mTag);
+                            }
+                        });
+                    }
                 }
             });
-            mBottomSheet.show();
-        } else {
+        } catch (RejectedExecutionException e) {
+            mPreparing = false;
             if (mTag != null) {
-                Log.e("BottomSheetBuilder: " + mTag + ": ", "The BottomSheetDialog is already shown");
+                Log.e("BottomSheetBuilder: " + mTag + ": ", "The executor rejected loading the resources, showing the BottomSheetDialog right away.");
             } else {
-                Log.e("BottomSheetBuilder: ", "The BottomSheetDialog is already shown");
+                Log.e("BottomSheetBuilder: ", "The executor rejected loading the resources, showing the BottomSheetDialog right away.");
             }
+            showSheet(spec, rowFactory);
+            if (listener != null)
+                listener.onSheetReady(mTag);
         }
     }
 
     public void dismiss() {
-        if (mBottomSheet != null) {
-            mDismissedByAction = true;
-            mBottomSheet.dismiss();
+        if (mSheet != null)
+            mSheet.dismiss();
+    }
+
+
+    /*
+     *
+     * Lifecycle
+     *
+     */
+
+    /**
+     * Binds this builder to a LifecycleOwner, usually the Activity or Fragment showing the BottomSheet.
+     * When it is destroyed, the BottomSheet is dismissed without calling the onSheetDismissedListener
+     * and the builder drops its context, views and listeners.
+     * The builder can't be shown anymore afterwards, so it can be kept in a field without leaking the Activity
+     *
+     * @param owner The LifecycleOwner to bind to
+     */
+    public BottomSheetBuilder bindTo(@NonNull LifecycleOwner owner) {
+        if (mLifecycle != null)
+            mLifecycle.removeObserver(mLifecycleObserver);
+        mLifecycle = owner.getLifecycle();
+        if (mLifecycle.getCurrentState() == Lifecycle.State.DESTROYED) {
+            release();
+            return this;
+        }
+        mLifecycleObserver = new ReleaseOnDestroy();
+        mLifecycle.addObserver(mLifecycleObserver);
+        return this;
+    }
+
+    /**
+     * Dismisses the BottomSheet and drops all references to the context, views and listeners
+     */
+    private void release() {
+        mReleased = true;
+        if (mLifecycle != null && mLifecycleObserver != null)
+            mLifecycle.removeObserver(mLifecycleObserver);
+        mLifecycle = null;
+        mLifecycleObserver = null;
+        if (mSheet != null)
+            mSheet.destroy();
+        if (mPrewarmed != null)
+            mPrewarmed.destroy();
+        if (mPagedItems != null)
+            mPagedItems.setAdapter(null);
+        mSheet = null;
+        mPrewarmed = null;
+        mContext = null;
+        mItemClickListener = null;
+        mItemIdClickListener = null;
+        mItemsSelectedListener = null;
+        mDismissedListener = null;
+        mMetricsListener = null;
+    }
+
+    /**
+     * @return Whether the builder has been released with its LifecycleOwner, logging an error if so
+     */
+    private boolean isReleased() {
+        if (mReleased) {
+            if (mTag != null) {
+                Log.e("BottomSheetBuilder: " + mTag + ": ", "The LifecycleOwner of this BottomSheetBuilder has been destroyed");
+            } else {
+                Log.e("BottomSheetBuilder: ", "The LifecycleOwner of this BottomSheetBuilder has been destroyed");
+            }
+        }
+        return mReleased;
+    }
+
+    private final class ReleaseOnDestroy implements LifecycleObserver {
+        @OnLifecycleEvent(Lifecycle.Event.ON_DESTROY)
+        public void onDestroy() {
+            release();
         }
     }
 
@@ -626,8 +1311,61 @@ public class BottomSheetBuilder {
         void onItemClicked(View view, int which, String tag);
     }
 
+    public interface onItemIdClickListener {
+        void onItemClicked(View view, long id, int which, String tag);
+    }
+
+    public interface onItemsSelectedListener {
+        void onItemsSelected(int[] positions, String tag);
+    }
+
     public interface onSheetDismissedListener {
         void onDismissed(String tag);
     }
 
+    public interface onSheetReadyListener {
+        void onSheetReady(String tag);
+    }
+
+    /**
+     * Receives timings of the hot paths of a BottomSheet. All durations are in nanoseconds
+     */
+    public interface onMetricsListener {
+        /**
+         * The builder has been set up
+         */
+        void onSetup(String tag, long durationNs);
+
+        /**
+         * The title and item rows have been created. In virtualized mode,
+         * rows are only created during the first layout and counted in {@link #onFirstFrame(String, int, int, long)}
+         *
+         * @param viewCount     The number of views created
+         * @param drawableCount The number of icons set
+         */
+        void onItemsCreated(String tag, int viewCount, int drawableCount, long durationNs);
+
+        /**
+         * The dialog has been created or taken from the prewarmed dialogs
+         */
+        void onDialogCreated(String tag, boolean prewarmed, long durationNs);
+
+        /**
+         * The BottomSheet is about to draw its first frame after show() has been called
+         *
+         * @param viewCount     The number of views created since the sheet was prepared,
+         *                      including the rows created during the first layout
+         * @param drawableCount The number of icons set since the sheet was prepared
+         */
+        void onFirstFrame(String tag, int viewCount, int drawableCount, long durationNs);
+
+        /**
+         * An item has been tapped and the click is about to be dispatched to the listener
+         *
+         * @param which      The position of the item
+         * @param durationNs Time since the finger was lifted
+         */
+        void onItemClickDispatched(String tag, int which, long durationNs);
+    }
+
 }
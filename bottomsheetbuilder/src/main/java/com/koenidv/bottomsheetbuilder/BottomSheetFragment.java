@@ -0,0 +1,384 @@
+package com.koenidv.bottomsheetbuilder;
+
+import android.app.Dialog;
+import android.content.Context;
+import android.content.DialogInterface;
+import android.os.AsyncTask;
+import android.os.Bundle;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+import android.view.Window;
+
+import com.google.android.material.bottomsheet.BottomSheetDialogFragment;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import androidx.annotation.NonNull;
+import androidx.fragment.app.Fragment;
+import androidx.fragment.app.FragmentActivity;
+
+/**
+ * A BottomSheet that survives configuration changes, created by {@link BottomSheetBuilder#buildFragment()}.
+ * Items, title and styling are kept in the fragment's arguments, the expanded state and scroll position
+ * in its saved state. After a configuration change only the views are created again, without the open animation.
+ * <p>
+ * Arguments are saved through Binder, which limits their size. Sheets with more than
+ * {@value #MAX_ARGUMENT_ITEMS} items keep their items in memory instead. They survive configuration changes,
+ * but are dismissed if the app's process has been restarted in the meantime.
+ * <p>
+ * Listeners can't be kept across configuration changes. If the parent fragment or the Activity implements
+ * {@link BottomSheetBuilder.onItemClickListener} or {@link BottomSheetBuilder.onSheetDismissedListener},
+ * it is used when no listener has been set on this fragment
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class BottomSheetFragment extends BottomSheetDialogFragment {
+
+    private static final String ARG_TEXTS = "bottomsheetbuilder:texts";
+    private static final String ARG_TEXT_RES = "bottomsheetbuilder:textRes";
+    private static final String ARG_ICONS = "bottomsheetbuilder:icons";
+    private static final String ARG_COLORS = "bottomsheetbuilder:colors";
+    private static final String ARG_FLAGS = "bottomsheetbuilder:flags";
+    private static final String ARG_IDS = "bottomsheetbuilder:ids";
+    private static final String ARG_TITLE = "bottomsheetbuilder:title";
+    private static final String ARG_TITLE_RES = "bottomsheetbuilder:titleRes";
+    private static final String ARG_TITLE_STYLE = "bottomsheetbuilder:titleStyle";
+    private static final String ARG_TITLE_COLOR = "bottomsheetbuilder:titleColor";
+    private static final String ARG_SHEET_STYLE = "bottomsheetbuilder:sheetStyle";
+    private static final String ARG_TAG = "bottomsheetbuilder:tag";
+    private static final String ARG_ITEM_HEIGHT = "bottomsheetbuilder:itemHeight";
+    private static final String ARG_ITEM_PADDING = "bottomsheetbuilder:itemPadding";
+    private static final String ARG_DRAWABLE_PADDING = "bottomsheetbuilder:drawablePadding";
+    private static final String ARG_VIRTUALIZED = "bottomsheetbuilder:virtualized";
+    private static final String ARG_FLAT = "bottomsheetbuilder:flat";
+    private static final String ARG_MULTI_SELECT = "bottomsheetbuilder:multiSelect";
+    private static final String ARG_SELECTED = "bottomsheetbuilder:selected";
+    private static final String ARG_ICON_URIS = "bottomsheetbuilder:iconUris";
+    private static final String ARG_GRID_COLUMNS = "bottomsheetbuilder:gridColumns";
+    private static final String ARG_ICON_ATLAS = "bottomsheetbuilder:iconAtlas";
+    private static final String ARG_SECTION_STARTS = "bottomsheetbuilder:sectionStarts";
+    private static final String ARG_SECTION_TEXTS = "bottomsheetbuilder:sectionTexts";
+    private static final String ARG_SECTION_TEXT_RES = "bottomsheetbuilder:sectionTextRes";
+    private static final String ARG_SEARCHABLE = "bottomsheetbuilder:searchable";
+    private static final String ARG_ITEMS_KEY = "bottomsheetbuilder:itemsKey";
+    private static final String STATE_SHEET = "bottomsheetbuilder:sheet";
+
+    /**
+     * The maximum number of items kept in the arguments
+     */
+    public static final int MAX_ARGUMENT_ITEMS = 500;
+
+    // Items of sheets too large for the arguments, by the key in their arguments
+    private static final Map<String, SheetItems> sItems = new HashMap<>();
+
+    private PreparedSheet mSheet;
+    // Items too large for the arguments until the fragment is attached, then they are kept in sItems
+    private SheetItems mKeptItems;
+    private BottomSheetBuilder.onItemClickListener mItemClickListener;
+    private BottomSheetBuilder.onItemIdClickListener mItemIdClickListener;
+    private BottomSheetBuilder.onItemsSelectedListener mItemsSelectedListener;
+    private BottomSheetBuilder.onSheetDismissedListener mDismissedListener;
+
+    public BottomSheetFragment() {
+    }
+
+    /**
+     * Creates a fragment from a spec. Only data that can be kept in a Bundle is used,
+     * i.e. no listeners and no item source
+     */
+    static BottomSheetFragment newInstance(BottomSheetSpec spec) {
+        Bundle args = new Bundle();
+        SheetItems keptItems = null;
+        if (spec.mItems.size() > MAX_ARGUMENT_ITEMS) {
+            keptItems = spec.mItems.copy();
+            args.putString(ARG_ITEMS_KEY, UUID.randomUUID().toString());
+        } else {
+            putItems(args, spec.mItems);
+        }
+        args.putString(ARG_TITLE, spec.mTitle);
+        args.putInt(ARG_TITLE_RES, spec.mTitleRes);
+        args.putInt(ARG_TITLE_STYLE, spec.mTitleStyle);
+        if (spec.mTitleColor != null)
+            args.putInt(ARG_TITLE_COLOR, spec.mTitleColor);
+        args.putInt(ARG_SHEET_STYLE, spec.mSheetStyle);
+        args.putString(ARG_TAG, spec.mTag);
+        args.putInt(ARG_ITEM_HEIGHT, spec.mItemHeight);
+        args.putInt(ARG_ITEM_PADDING, spec.mItemPadding);
+        args.putInt(ARG_DRAWABLE_PADDING, spec.mDrawablePadding);
+        args.putBoolean(ARG_VIRTUALIZED, spec.mVirtualized);
+        args.putBoolean(ARG_FLAT, spec.mFlat);
+        args.putBoolean(ARG_MULTI_SELECT, spec.mMultiSelect);
+        args.putInt(ARG_GRID_COLUMNS, spec.mGridColumns);
+        args.putBoolean(ARG_ICON_ATLAS, spec.mIconAtlas);
+        args.putBoolean(ARG_SEARCHABLE, spec.mSearchExecutor != null);
+        BottomSheetFragment fragment = new BottomSheetFragment();
+        fragment.setArguments(args);
+        fragment.mKeptItems = keptItems;
+        return fragment;
+    }
+
+    /**
+     * Writes the items into the arguments
+     */
+    private static void putItems(Bundle args, SheetItems items) {
+        int size = items.size();
+        String[] texts = new String[size];
+        int[] textRes = new int[size];
+        int[] icons = new int[size];
+        int[] colors = new int[size];
+        int[] flags = new int[size];
+        long[] ids = new long[size];
+        String[] iconUris = new String[size];
+        for (int i = 0; i < size; i++) {
+            textRes[i] = items.getTextRes(i);
+            // Resources are resolved again, the text might change with the configuration
+            texts[i] = textRes[i] == 0 ? items.getText(i) : null;
+            icons[i] = items.getIcon(i);
+            colors[i] = items.getColor(i);
+            flags[i] = items.getFlags(i);
+            ids[i] = items.getId(i);
+            iconUris[i] = items.getIconUri(i);
+        }
+        args.putStringArray(ARG_TEXTS, texts);
+        args.putIntArray(ARG_TEXT_RES, textRes);
+        args.putIntArray(ARG_ICONS, icons);
+        args.putIntArray(ARG_COLORS, colors);
+        args.putIntArray(ARG_FLAGS, flags);
+        args.putLongArray(ARG_IDS, ids);
+        args.putStringArray(ARG_ICON_URIS, iconUris);
+        args.putIntArray(ARG_SELECTED, items.getSelectedPositions());
+        int sectionCount = items.getSectionCount();
+        int[] sectionStarts = new int[sectionCount];
+        String[] sectionTexts = new String[sectionCount];
+        int[] sectionTextRes = new int[sectionCount];
+        for (int i = 0; i < sectionCount; i++) {
+            sectionStarts[i] = items.getSectionStart(i);
+            sectionTexts[i] = items.getSectionText(i);
+            sectionTextRes[i] = items.getSectionTextRes(i);
+        }
+        args.putIntArray(ARG_SECTION_STARTS, sectionStarts);
+        args.putStringArray(ARG_SECTION_TEXTS, sectionTexts);
+        args.putIntArray(ARG_SECTION_TEXT_RES, sectionTextRes);
+    }
+
+    /**
+     * Creates the spec from the arguments
+     *
+     * @return The spec, or null if its items were kept in memory and have been lost with the process
+     */
+    private static BottomSheetSpec readSpec(Bundle args) {
+        SheetItems items;
+        String itemsKey = args.getString(ARG_ITEMS_KEY);
+        if (itemsKey != null) {
+            SheetItems kept = sItems.get(itemsKey);
+            if (kept == null) return null;
+            // The sheet writes its selection and resolved texts into its items
+            items = kept.copy();
+        } else {
+            items = readItems(args);
+        }
+        return new BottomSheetSpec(items, args.getString(ARG_TITLE), args.getInt(ARG_TITLE_RES),
+                args.getInt(ARG_TITLE_STYLE),
+                args.containsKey(ARG_TITLE_COLOR) ? args.getInt(ARG_TITLE_COLOR) : null,
+                args.getInt(ARG_SHEET_STYLE), args.getString(ARG_TAG), args.getInt(ARG_ITEM_HEIGHT),
+                args.getInt(ARG_ITEM_PADDING), args.getInt(ARG_DRAWABLE_PADDING),
+                args.getBoolean(ARG_VIRTUALIZED), args.getBoolean(ARG_FLAT),
+                args.getBoolean(ARG_MULTI_SELECT), args.getInt(ARG_GRID_COLUMNS),
+                args.getBoolean(ARG_ICON_ATLAS), null,
+                args.getBoolean(ARG_SEARCHABLE) ? AsyncTask.THREAD_POOL_EXECUTOR : null);
+    }
+
+    /**
+     * Reads the items written by {@link #putItems(Bundle, SheetItems)}
+     */
+    private static SheetItems readItems(Bundle args) {
+        String[] texts = args.getStringArray(ARG_TEXTS);
+        int[] textRes = args.getIntArray(ARG_TEXT_RES);
+        int[] icons = args.getIntArray(ARG_ICONS);
+        int[] colors = args.getIntArray(ARG_COLORS);
+        int[] flags = args.getIntArray(ARG_FLAGS);
+        long[] ids = args.getLongArray(ARG_IDS);
+        String[] iconUris = args.getStringArray(ARG_ICON_URIS);
+        int[] sectionStarts = args.getIntArray(ARG_SECTION_STARTS);
+        String[] sectionTexts = args.getStringArray(ARG_SECTION_TEXTS);
+        int[] sectionTextRes = args.getIntArray(ARG_SECTION_TEXT_RES);
+        SheetItems items = new SheetItems();
+        int section = 0;
+        for (int i = 0; texts != null && i <= texts.length; i++) {
+            // Sections are started before their first item, like they were added
+            while (sectionStarts != null && section < sectionStarts.length && sectionStarts[section] == i) {
+                items.addSection(sectionTexts[section], sectionTextRes[section]);
+                section++;
+            }
+            if (i == texts.length) break;
+            items.add(texts[i], textRes[i], icons[i], colors[i]);
+            items.setFlag(i, flags[i], true);
+            items.setId(i, ids[i]);
+            if (iconUris != null && iconUris[i] != null)
+                items.setIconUri(i, iconUris[i]);
+        }
+        int[] selected = args.getIntArray(ARG_SELECTED);
+        for (int i = 0; selected != null && i < selected.length; i++)
+            items.setSelected(selected[i], true);
+        return items;
+    }
+
+    /**
+     * Sets the click listener. It is lost when the fragment is recreated,
+     * implement the listener in the Activity or parent fragment to keep receiving clicks
+     */
+    public BottomSheetFragment setOnItemClickListener(BottomSheetBuilder.onItemClickListener onItemClickListener) {
+        mItemClickListener = onItemClickListener;
+        return this;
+    }
+
+    /**
+     * Sets the listener receiving the ids of clicked items. It is lost when the fragment is recreated,
+     * implement the listener in the Activity or parent fragment to keep receiving clicks
+     */
+    public BottomSheetFragment setOnItemIdClickListener(BottomSheetBuilder.onItemIdClickListener onItemIdClickListener) {
+        mItemIdClickListener = onItemIdClickListener;
+        return this;
+    }
+
+    /**
+     * Sets the listener receiving the selected items of a multi-select sheet. It is lost when the fragment is recreated,
+     * implement the listener in the Activity or parent fragment to keep receiving the selection
+     */
+    public BottomSheetFragment setOnItemsSelectedListener(BottomSheetBuilder.onItemsSelectedListener onItemsSelectedListener) {
+        mItemsSelectedListener = onItemsSelectedListener;
+        return this;
+    }
+
+    /**
+     * Sets the dismiss listener. It is lost when the fragment is recreated,
+     * implement the listener in the Activity or parent fragment to keep receiving it
+     */
+    public BottomSheetFragment setOnSheetDismissedListener(BottomSheetBuilder.onSheetDismissedListener onSheetDismissedListener) {
+        mDismissedListener = onSheetDismissedListener;
+        return this;
+    }
+
+    @NonNull
+    @Override
+    public Dialog onCreateDialog(Bundle savedInstanceState) {
+        final BottomSheetSpec spec = readSpec(getArguments());
+        if (spec == null) {
+            Log.e("BottomSheetBuilder: ", "The items of this BottomSheet have been lost, dismissing it.");
+            dismissAllowingStateLoss();
+            return super.onCreateDialog(savedInstanceState);
+        }
+        // Styles and icons of the current configuration come from the app-wide caches
+        mSheet = new PreparedSheet(requireContext(), spec);
+        mSheet.setListeners(new BottomSheetBuilder.onItemClickListener() {
+            @Override
+            public void onItemClicked(View view, int which, String tag) {
+                BottomSheetBuilder.onItemClickListener listener = findListener(
+                        mItemClickListener, BottomSheetBuilder.onItemClickListener.class);
+                if (listener != null)
+                    listener.onItemClicked(view, which, tag);
+            }
+        }, new BottomSheetBuilder.onItemIdClickListener() {
+            @Override
+            public void onItemClicked(View view, long id, int which, String tag) {
+                BottomSheetBuilder.onItemIdClickListener listener = findListener(
+                        mItemIdClickListener, BottomSheetBuilder.onItemIdClickListener.class);
+                if (listener != null)
+                    listener.onItemClicked(view, id, which, tag);
+            }
+        }, new BottomSheetBuilder.onItemsSelectedListener() {
+            @Override
+            public void onItemsSelected(int[] positions, String tag) {
+                BottomSheetBuilder.onItemsSelectedListener listener = findListener(
+                        mItemsSelectedListener, BottomSheetBuilder.onItemsSelectedListener.class);
+                if (listener != null)
+                    listener.onItemsSelected(positions, tag);
+            }
+        }, null);
+        Dialog dialog = mSheet.getDialog();
+        if (savedInstanceState != null && savedInstanceState.getBundle(STATE_SHEET) != null) {
+            mSheet.restoreState(savedInstanceState.getBundle(STATE_SHEET));
+            // The sheet was already open before the configuration change
+            Window window = dialog.getWindow();
+            if (window != null)
+                skipOpenAnimation(window);
+        }
+        return dialog;
+    }
+
+    /**
+     * Shows the window without its open animation. The animations are restored
+     * once the first frame has been drawn, so that the sheet still animates when it is closed
+     */
+    private static void skipOpenAnimation(final Window window) {
+        final int animations = window.getAttributes().windowAnimations;
+        window.setWindowAnimations(0);
+        final View decorView = window.getDecorView();
+        decorView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                decorView.getViewTreeObserver().removeOnPreDrawListener(this);
+                // Runs after this frame has been drawn
+                decorView.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        window.setWindowAnimations(animations);
+                    }
+                });
+                return true;
+            }
+        });
+    }
+
+    @Override
+    public void onAttach(Context context) {
+        super.onAttach(context);
+        // A fragment that is never shown doesn't keep its items in memory
+        if (mKeptItems != null) {
+            sItems.put(getArguments().getString(ARG_ITEMS_KEY), mKeptItems);
+            mKeptItems = null;
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        // Items kept in memory are only needed again if the fragment is recreated
+        FragmentActivity activity = getActivity();
+        String itemsKey = getArguments() != null ? getArguments().getString(ARG_ITEMS_KEY) : null;
+        if (itemsKey != null && (activity == null || !activity.isChangingConfigurations()))
+            sItems.remove(itemsKey);
+    }
+
+    @Override
+    public void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        if (mSheet != null)
+            outState.putBundle(STATE_SHEET, mSheet.saveState());
+    }
+
+    @Override
+    public void onCancel(DialogInterface dialog) {
+        super.onCancel(dialog);
+        BottomSheetBuilder.onSheetDismissedListener listener = findListener(
+                mDismissedListener, BottomSheetBuilder.onSheetDismissedListener.class);
+        if (listener != null)
+            listener.onDismissed(getArguments().getString(ARG_TAG));
+    }
+
+    /**
+     * @return The listener set on this fragment, or the parent fragment or Activity if they implement it
+     */
+    private <T> T findListener(T listener, Class<T> type) {
+        if (listener != null)
+            return listener;
+        Fragment parent = getParentFragment();
+        if (type.isInstance(parent))
+            return type.cast(parent);
+        if (type.isInstance(getActivity()))
+            return type.cast(getActivity());
+        return null;
+    }
+}
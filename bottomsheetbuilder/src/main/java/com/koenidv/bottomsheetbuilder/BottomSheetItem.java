@@ -0,0 +1,101 @@
+package com.koenidv.bottomsheetbuilder;
+
+import android.net.Uri;
+
+import androidx.annotation.ColorInt;
+import androidx.annotation.DrawableRes;
+import androidx.annotation.NonNull;
+import androidx.annotation.StringRes;
+
+/**
+ * An item for {@link BottomSheetBuilder#updateItems(java.util.List)}.
+ * The id identifies the item across updates, so that only changed rows have to be updated
+ */
+@SuppressWarnings({"unused", "UnusedReturnValue"})
+public final class BottomSheetItem {
+
+    final long mId;
+    final String mText;
+    @StringRes
+    final int mTextRes;
+    @DrawableRes
+    int mIcon = 0;
+    String mIconUri;
+    @ColorInt
+    int mColor = 0;
+    boolean mHasColor = false;
+    boolean mEnabled = true;
+
+    /**
+     * @param id   A stable id, unique within the BottomSheet. Must not be negative
+     * @param text The text to display
+     */
+    public BottomSheetItem(long id, @NonNull String text) {
+        this(id, text, 0);
+    }
+
+    /**
+     * @param id        A stable id, unique within the BottomSheet. Must not be negative
+     * @param stringRes The resource Id of the text to display
+     */
+    public BottomSheetItem(long id, @StringRes int stringRes) {
+        this(id, null, stringRes);
+    }
+
+    private BottomSheetItem(long id, String text, int textRes) {
+        if (id < 0)
+            throw new IllegalArgumentException("Item ids must not be negative");
+        mId = id;
+        mText = text;
+        mTextRes = textRes;
+    }
+
+    /**
+     * Sets the icon of the item. A default icon set by {@link BottomSheetBuilder#setIcon(int, int...)}
+     * is used instead, like for items added to the builder
+     *
+     * @param icon The icon's resource id, 0 for no icon
+     */
+    public BottomSheetItem setIcon(@DrawableRes int icon) {
+        mIcon = icon;
+        mIconUri = null;
+        return this;
+    }
+
+    /**
+     * Sets an icon loaded from an image, e.g. an app icon, a contact photo or a file.
+     * The image is decoded in the background and a placeholder is shown until it is loaded
+     *
+     * @param icon The URI of the image, a file, content or android.resource URI
+     */
+    public BottomSheetItem setIcon(@NonNull Uri icon) {
+        mIconUri = icon.toString();
+        mIcon = 0;
+        return this;
+    }
+
+    /**
+     * Sets the color of the text and icon. Without a color, the BottomSheet's default color is used
+     *
+     * @param color The color to set the item to
+     */
+    public BottomSheetItem setColor(@ColorInt int color) {
+        mColor = color;
+        mHasColor = true;
+        return this;
+    }
+
+    /**
+     * Enables or disables the item. Disabled items are greyed out and can't be clicked
+     *
+     * @param enabled Whether the item should be enabled, default is true
+     */
+    public BottomSheetItem setEnabled(boolean enabled) {
+        mEnabled = enabled;
+        return this;
+    }
+
+    public long getId() {
+        return mId;
+    }
+}
@@ -0,0 +1,27 @@
+package com.koenidv.bottomsheetbuilder;
+
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+/**
+ * Loads the items of a BottomSheet page by page, see {@link BottomSheetBuilder#setItemSource(BottomSheetItemSource, java.util.concurrent.Executor)}.
+ * Pages are loaded while the user scrolls and can be loaded again after they have been dropped from memory,
+ * so a page has to contain the same items every time it is loaded
+ */
+public interface BottomSheetItemSource {
+
+    /**
+     * Loads a page of items. Called on the executor passed to the builder
+     *
+     * @param page     The index of the page, starting at 0
+     * @param pageSize The number of items in a page
+     * @return The items of the page. Fewer than pageSize items mark the end of the list
+     * @throws RuntimeException If the page can't be loaded. It is requested again later,
+     *                          the page after the loaded items, e.g. the first one, a few times with an increasing delay
+     */
+    @WorkerThread
+    @NonNull
+    List<BottomSheetItem> loadPage(int page, int pageSize);
+}
@@ -0,0 +1,263 @@
+package com.koenidv.bottomsheetbuilder;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.os.Bundle;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.StringRes;
+import androidx.annotation.StyleRes;
+
+/**
+ * An immutable BottomSheet, created by {@link BottomSheetBuilder#build()}.
+ * It can be kept, e.g. in a static field or a ViewModel, and shown as often as needed.
+ * The dialog and its views are created on the first show in an Activity
+ * and reused for every following show until that Activity is destroyed.
+ * Listeners are not part of the spec, they are passed to each show and dropped once the BottomSheet is dismissed
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class BottomSheetSpec {
+
+    final SheetItems mItems;
+    final String mTitle;
+    @StringRes
+    final int mTitleRes;
+    @StyleRes
+    final int mTitleStyle;
+    final Integer mTitleColor;
+    @StyleRes
+    final int mSheetStyle;
+    final String mTag;
+    final int mItemHeight;
+    final int mItemPadding;
+    final int mDrawablePadding;
+    final boolean mVirtualized;
+    final boolean mFlat;
+    final boolean mMultiSelect;
+    final int mGridColumns;
+    final boolean mIconAtlas;
+    final PagedItems mPagedItems;
+    final Executor mSearchExecutor;
+
+    private final Map<Context, PreparedSheet> mPrepared = new HashMap<>();
+
+    BottomSheetSpec(SheetItems items, String title, int titleRes, int titleStyle, Integer titleColor,
+                    int sheetStyle, String tag, int itemHeight, int itemPadding, int drawablePadding,
+                    boolean virtualized, boolean flat, boolean multiSelect, int gridColumns, boolean iconAtlas,
+                    PagedItems pagedItems,
+                    Executor searchExecutor) {
+        mItems = items;
+        mTitle = title;
+        mTitleRes = titleRes;
+        mTitleStyle = titleStyle;
+        mTitleColor = titleColor;
+        mSheetStyle = sheetStyle;
+        mTag = tag;
+        mItemHeight = itemHeight;
+        mItemPadding = itemPadding;
+        mDrawablePadding = drawablePadding;
+        mVirtualized = virtualized;
+        mFlat = flat;
+        mMultiSelect = multiSelect;
+        mGridColumns = gridColumns;
+        mIconAtlas = iconAtlas;
+        mPagedItems = pagedItems;
+        mSearchExecutor = searchExecutor;
+    }
+
+    /**
+     * Shows the BottomSheet without any listener, e.g. to only display information
+     *
+     * @param context The context to show the BottomSheet in, usually an Activity
+     */
+    public void show(@NonNull Context context) {
+        show(context, null, null, null, null, null);
+    }
+
+    /**
+     * Shows the BottomSheet with a click and a dismiss listener
+     *
+     * @param context           The context to show the BottomSheet in, usually an Activity
+     * @param itemClickListener Optional: Called when an item is clicked
+     * @param dismissedListener Optional: Called when the BottomSheet is dismissed without clicking an item
+     */
+    public void show(@NonNull Context context,
+                     BottomSheetBuilder.onItemClickListener itemClickListener,
+                     BottomSheetBuilder.onSheetDismissedListener dismissedListener) {
+        show(context, itemClickListener, null, null, dismissedListener, null);
+    }
+
+    /**
+     * Shows the BottomSheet with all listeners. They are only kept until the BottomSheet is dismissed.
+     * Every showing starts with the selection the spec has been built with
+     *
+     * @param context               The context to show the BottomSheet in, usually an Activity
+     * @param itemClickListener     Optional: Called when an item is clicked
+     * @param itemIdClickListener   Optional: Called with the id of a clicked item
+     * @param itemsSelectedListener Optional: Called when the selection of a multi-select sheet is confirmed
+     * @param dismissedListener     Optional: Called when the BottomSheet is dismissed without clicking an item
+     * @param metricsListener       Optional: Receives timings and counts of this showing,
+     *                              including the creation of the views if this is the first show in the context
+     */
+    public void show(@NonNull Context context,
+                     BottomSheetBuilder.onItemClickListener itemClickListener,
+                     BottomSheetBuilder.onItemIdClickListener itemIdClickListener,
+                     BottomSheetBuilder.onItemsSelectedListener itemsSelectedListener,
+                     BottomSheetBuilder.onSheetDismissedListener dismissedListener,
+                     BottomSheetBuilder.onMetricsListener metricsListener) {
+        PreparedSheet sheet = mPrepared.get(context);
+        if (sheet == null) {
+            sheet = prepare(context, metricsListener);
+            Activity activity = findActivity(context);
+            // Only keep the sheet if we can release it once the Activity is destroyed
+            if (activity != null) {
+                if (!isTracked(activity))
+                    activity.getApplication().registerActivityLifecycleCallbacks(new ReleaseOnDestroy(activity));
+                mPrepared.put(context, sheet);
+            }
+        } else if (sheet.isShowing()) {
+            if (mTag != null) {
+                Log.e("BottomSheetBuilder: " + mTag + ": ", "The BottomSheetDialog is already shown");
+            } else {
+                Log.e("BottomSheetBuilder: ", "The BottomSheetDialog is already shown");
+            }
+            return;
+        } else {
+            // The previous showing might have changed the selection
+            sheet.resetSelection(mItems);
+        }
+        sheet.show(itemClickListener, itemIdClickListener, itemsSelectedListener, dismissedListener, metricsListener);
+    }
+
+    /**
+     * Prepares the dialog and its views for an Activity while the main thread is idle,
+     * so that the following {@link #show(Context)} only has to show the dialog.
+     * Has to be called from the main thread
+     *
+     * @param context The context the BottomSheet will be shown in
+     */
+    public void prewarm(@NonNull final Context context) {
+        final Activity activity = findActivity(context);
+        if (activity == null || mPrepared.containsKey(context)) return;
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                if (!mPrepared.containsKey(context) && !activity.isFinishing()) {
+                    if (!isTracked(activity))
+                        activity.getApplication().registerActivityLifecycleCallbacks(new ReleaseOnDestroy(activity));
+                    mPrepared.put(context, prepare(context, null));
+                }
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Creates a sheet with its own copy of the items, so that the selection
+     * and resolved resources of one sheet don't change the spec or any other sheet
+     */
+    private PreparedSheet prepare(Context context, BottomSheetBuilder.onMetricsListener metricsListener) {
+        return new PreparedSheet(context, this, mItems.copy(), new RowFactory(context, this), metricsListener);
+    }
+
+    /**
+     * Dismisses the BottomSheet wherever it is currently shown
+     */
+    public void dismiss() {
+        for (PreparedSheet sheet : mPrepared.values()) {
+            if (sheet.isShowing())
+                sheet.dismiss();
+        }
+    }
+
+    public String getTag() {
+        return mTag;
+    }
+
+    public int getItemCount() {
+        return mPagedItems != null ? mPagedItems.size() : mItems.size();
+    }
+
+    private boolean isTracked(Activity activity) {
+        for (Context context : mPrepared.keySet()) {
+            if (findActivity(context) == activity)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Unwraps a context until an Activity is found
+     *
+     * @return The Activity or null if the context doesn't belong to one
+     */
+    static Activity findActivity(Context context) {
+        while (context instanceof ContextWrapper) {
+            if (context instanceof Activity)
+                return (Activity) context;
+            context = ((ContextWrapper) context).getBaseContext();
+        }
+        return null;
+    }
+
+    /**
+     * Drops the prepared sheets of an Activity when it is destroyed
+     */
+    private final class ReleaseOnDestroy implements Application.ActivityLifecycleCallbacks {
+
+        private final Activity mActivity;
+
+        ReleaseOnDestroy(Activity activity) {
+            mActivity = activity;
+        }
+
+        @Override
+        public void onActivityDestroyed(Activity activity) {
+            if (activity != mActivity) return;
+            Iterator<Map.Entry<Context, PreparedSheet>> iterator = mPrepared.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Context, PreparedSheet> entry = iterator.next();
+                if (findActivity(entry.getKey()) == activity) {
+                    entry.getValue().destroy();
+                    entry.getValue().detachPagedItems();
+                    iterator.remove();
+                }
+            }
+            activity.getApplication().unregisterActivityLifecycleCallbacks(this);
+        }
+
+        @Override
+        public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+        }
+
+        @Override
+        public void onActivityStarted(Activity activity) {
+        }
+
+        @Override
+        public void onActivityResumed(Activity activity) {
+        }
+
+        @Override
+        public void onActivityPaused(Activity activity) {
+        }
+
+        @Override
+        public void onActivityStopped(Activity activity) {
+        }
+
+        @Override
+        public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+        }
+    }
+}
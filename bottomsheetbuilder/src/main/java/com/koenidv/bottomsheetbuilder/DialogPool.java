@@ -0,0 +1,146 @@
+package com.koenidv.bottomsheetbuilder;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import com.google.android.material.bottomsheet.BottomSheetDialog;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ * A small pool of BottomSheetDialogs that have been created while the main thread was idle.
+ * Dialogs are pooled per Activity and style and dropped when their Activity is destroyed
+ */
+final class DialogPool {
+
+    private static final int MAX_SIZE = 4;
+
+    private static final ArrayList<Entry> sPool = new ArrayList<>();
+    private static boolean sCallbacksRegistered = false;
+
+    private DialogPool() {
+    }
+
+    /**
+     * Creates a dialog for the pool the next time the main thread is idle.
+     * Has to be called from the main thread
+     */
+    static void prewarm(final Context context, final int style) {
+        final Activity activity = BottomSheetSpec.findActivity(context);
+        if (activity == null) return;
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                if (sPool.size() < MAX_SIZE && !activity.isFinishing()) {
+                    registerCallbacks(activity);
+                    sPool.add(Entry.create(context, style));
+                }
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Returns a dialog that has never been shown to the pool. Its container has to be empty
+     */
+    static void release(Entry entry) {
+        Activity activity = BottomSheetSpec.findActivity(entry.mContext);
+        if (activity == null || activity.isFinishing() || sPool.size() >= MAX_SIZE) return;
+        registerCallbacks(activity);
+        entry.mDialog.setOnDismissListener(null);
+        sPool.add(entry);
+    }
+
+    private static void registerCallbacks(Activity activity) {
+        if (!sCallbacksRegistered) {
+            activity.getApplication().registerActivityLifecycleCallbacks(new ReleaseOnDestroy());
+            sCallbacksRegistered = true;
+        }
+    }
+
+    /**
+     * Takes a pooled dialog for a context and style
+     *
+     * @return The dialog or null if none has been prewarmed
+     */
+    static Entry take(Context context, int style) {
+        for (int i = 0; i < sPool.size(); i++) {
+            Entry entry = sPool.get(i);
+            if (entry.mContext == context && entry.mStyle == style)
+                return sPool.remove(i);
+        }
+        return null;
+    }
+
+    /**
+     * A dialog with an empty container that the content will be added to.
+     * The bottom sheet around the container is already inflated
+     */
+    static final class Entry {
+        final Context mContext;
+        final int mStyle;
+        final BottomSheetDialog mDialog;
+        final FrameLayout mContainer;
+
+        private Entry(Context context, int style, BottomSheetDialog dialog, FrameLayout container) {
+            mContext = context;
+            mStyle = style;
+            mDialog = dialog;
+            mContainer = container;
+        }
+
+        static Entry create(Context context, int style) {
+            BottomSheetDialog dialog;
+            if (style != 0)
+                dialog = new BottomSheetDialog(context, style);
+            else
+                dialog = new BottomSheetDialog(context);
+            FrameLayout container = new FrameLayout(context);
+            dialog.setContentView(container, new ViewGroup.LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+            return new Entry(context, style, dialog, container);
+        }
+    }
+
+    private static final class ReleaseOnDestroy implements Application.ActivityLifecycleCallbacks {
+        @Override
+        public void onActivityDestroyed(Activity activity) {
+            Iterator<Entry> iterator = sPool.iterator();
+            while (iterator.hasNext()) {
+                if (BottomSheetSpec.findActivity(iterator.next().mContext) == activity)
+                    iterator.remove();
+            }
+        }
+
+        @Override
+        public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+        }
+
+        @Override
+        public void onActivityStarted(Activity activity) {
+        }
+
+        @Override
+        public void onActivityResumed(Activity activity) {
+        }
+
+        @Override
+        public void onActivityPaused(Activity activity) {
+        }
+
+        @Override
+        public void onActivityStopped(Activity activity) {
+        }
+
+        @Override
+        public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package com.koenidv.bottomsheetbuilder;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.os.Bundle;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.view.KeyEvent;
+import android.view.MotionEvent;
+import android.view.SoundEffectConstants;
+import android.view.View;
+import android.view.accessibility.AccessibilityEvent;
+
+import java.util.BitSet;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+import androidx.core.view.ViewCompat;
+import androidx.core.view.accessibility.AccessibilityNodeInfoCompat;
+import androidx.customview.widget.ExploreByTouchHelper;
+
+/**
+ * A single view that measures and draws all items, instead of one TextView per item.
+ * Labels are ellipsized to one line. Touches are hit-tested by row,
+ * accessibility services see every item as a virtual view
+ */
+@SuppressLint("ViewConstructor")
+final class FlatItemsView extends View {
+
+    private static final int[] STATE_PRESSED = {android.R.attr.state_pressed, android.R.attr.state_enabled};
+    private static final int[] STATE_RELEASED = {android.R.attr.state_enabled};
+
+    private final SheetItems mItems;
+    private final int mItemHeight;
+    private final int mItemPadding;
+    private final int mDrawablePadding;
+    private final int mIconSize;
+    private final boolean mIconAtlas;
+    private final OnRowClickListener mClickListener;
+    private final TextPaint mTextPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final Drawable mPressedBackground;
+    private final AccessibilityHelper mAccessibilityHelper;
+
+    // Ellipsized labels and tinted icons, prepared when a row is first drawn
+    private CharSequence[] mLabels = new CharSequence[0];
+    private Drawable[] mIcons = new Drawable[0];
+    private final BitSet mPrepared = new BitSet();
+    private int mPreparedWidth = -1;
+
+    private int mPressedPosition = -1;
+    private final Rect mRowBounds = new Rect();
+    private final Rect mClipBounds = new Rect();
+
+    FlatItemsView(Context context, SheetItems items, StyleCache.Style style, int itemHeight, int itemPadding,
+                  int drawablePadding, boolean iconAtlas, OnRowClickListener clickListener) {
+        super(context);
+        mItems = items;
+        mItemHeight = itemHeight;
+        mItemPadding = itemPadding;
+        mDrawablePadding = drawablePadding;
+        mIconSize = style.mIconSize;
+        mIconAtlas = iconAtlas;
+        mClickListener = clickListener;
+        mTextPaint.setTextSize(style.mItemTextSize);
+        mTextPaint.setTypeface(style.mItemTypeface);
+        mPressedBackground = style.mItemBackground != 0
+                ? ContextCompat.getDrawable(context, style.mItemBackground) : null;
+        if (mPressedBackground != null)
+            mPressedBackground.setCallback(this);
+        mAccessibilityHelper = new AccessibilityHelper(this);
+        ViewCompat.setAccessibilityDelegate(this, mAccessibilityHelper);
+        setPadding(0, 0, 0, itemPadding / 2);
+    }
+
+    /**
+     * Redraws changed items
+     *
+     * @param positions The positions of the changed items
+     */
+    void refreshItems(BitSet positions) {
+        mPrepared.andNot(positions);
+        invalidate();
+        mAccessibilityHelper.invalidateRoot();
+    }
+
+    /**
+     * Measures and redraws all items after items have been added, removed or moved
+     */
+    void onItemsChanged() {
+        mPrepared.clear();
+        requestLayout();
+        invalidate();
+        mAccessibilityHelper.invalidateRoot();
+    }
+
+    /**
+     * @return The height of all rows including the padding, known without measuring
+     */
+    int getContentHeight() {
+        return mItems.size() * mItemHeight + getPaddingTop() + getPaddingBottom();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        setMeasuredDimension(getDefaultSize(getSuggestedMinimumWidth(), widthMeasureSpec),
+                resolveSize(getContentHeight(), heightMeasureSpec));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (mPreparedWidth != getWidth()) {
+            mPreparedWidth = getWidth();
+            mPrepared.clear();
+        }
+        if (mLabels.length < mItems.size()) {
+            mLabels = new CharSequence[mItems.size()];
+            mIcons = new Drawable[mItems.size()];
+            mPrepared.clear();
+        }
+        // Also drawn after the row has been released, so that the ripple can fade out
+        if (mPressedBackground != null && !mPressedBackground.getBounds().isEmpty())
+            mPressedBackground.draw(canvas);
+
+        boolean rtl = isRtl();
+        Paint.FontMetrics metrics = mTextPaint.getFontMetrics();
+        float baselineOffset = (mItemHeight - metrics.ascent - metrics.descent) / 2f;
+        mTextPaint.setTextAlign(rtl ? Paint.Align.RIGHT : Paint.Align.LEFT);
+        // Only draw the rows within the visible part of the sheet
+        canvas.getClipBounds(mClipBounds);
+        int first = Math.max(0, (mClipBounds.top - getPaddingTop()) / mItemHeight);
+        int last = Math.min(mItems.size() - 1, (mClipBounds.bottom - getPaddingTop()) / mItemHeight);
+        for (int i = first; i <= last; i++) {
+            prepareRow(i);
+            int top = getPaddingTop() + i * mItemHeight;
+            int start = mItemPadding;
+            Drawable icon = mIcons[i];
+            if (icon != null) {
+                int iconTop = top + (mItemHeight - icon.getIntrinsicHeight()) / 2;
+                int iconLeft = rtl ? getWidth() - start - icon.getIntrinsicWidth() : start;
+                icon.setBounds(iconLeft, iconTop, iconLeft + icon.getIntrinsicWidth(),
+                        iconTop + icon.getIntrinsicHeight());
+                icon.draw(canvas);
+                start += icon.getIntrinsicWidth() + mDrawablePadding;
+            }
+            if (mLabels[i] != null) {
+                mTextPaint.setColor(RowFactory.getItemColor(mItems, i));
+                canvas.drawText(mLabels[i], 0, mLabels[i].length(),
+                        rtl ? getWidth() - start : start, top + baselineOffset, mTextPaint);
+            }
+        }
+    }
+
+    /**
+     * Ellipsizes the label and loads the icon of a row, if they aren't prepared yet
+     */
+    private void prepareRow(int position) {
+        if (mPrepared.get(position)) return;
+        int color = RowFactory.getItemColor(mItems, position);
+        int icon = mItems.getIcon(position);
+        String iconUri = mItems.getIconUri(position);
+        if (iconUri != null) {
+            AsyncIconDrawable asyncIcon = new AsyncIconDrawable(mIconSize, color);
+            asyncIcon.setCallback(this);
+            BitmapIconCache.load(getContext(), iconUri, mIconSize, asyncIcon);
+            mIcons[position] = asyncIcon;
+        } else {
+            mIcons[position] = icon != 0 ? RowFactory.getIcon(getContext(), icon, color, mIconAtlas) : null;
+        }
+        String text = ResourcePreparer.getText(getContext(), mItems, position);
+        if (text != null) {
+            int available = getWidth() - 2 * mItemPadding;
+            if (mIcons[position] != null)
+                available -= mIcons[position].getIntrinsicWidth() + mDrawablePadding;
+            mLabels[position] = TextUtils.ellipsize(text, mTextPaint, Math.max(0, available),
+                    TextUtils.TruncateAt.END);
+        } else {
+            mLabels[position] = null;
+        }
+        mPrepared.set(position);
+    }
+
+    /**
+     * @return The position of the item at a vertical position, or -1 if there is none
+     */
+    private int getPositionAt(float y) {
+        int position = (int) Math.floor((y - getPaddingTop()) / mItemHeight);
+        return position >= 0 && position < mItems.size() ? position : -1;
+    }
+
+    private boolean isItemEnabled(int position) {
+        return !mItems.hasFlag(position, SheetItems.FLAG_DISABLED);
+    }
+
+    private void getRowBounds(int position, Rect outBounds) {
+        int top = getPaddingTop() + position * mItemHeight;
+        outBounds.set(0, top, getWidth(), top + mItemHeight);
+    }
+
+    private boolean isRtl() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1
+                && getLayoutDirection() == LAYOUT_DIRECTION_RTL;
+    }
+
+    @SuppressLint("ClickableViewAccessibility")
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                int position = getPositionAt(event.getY());
+                if (position < 0 || !isItemEnabled(position))
+                    return false;
+                setPressedPosition(position, event.getX(), event.getY());
+                return true;
+            case MotionEvent.ACTION_MOVE:
+                if (mPressedPosition >= 0 && getPositionAt(event.getY()) != mPressedPosition)
+                    setPressedPosition(-1, 0, 0);
+                return true;
+            case MotionEvent.ACTION_UP:
+                if (mPressedPosition >= 0) {
+                    int clicked = mPressedPosition;
+                    setPressedPosition(-1, 0, 0);
+                    performItemClick(clicked);
+                }
+                return true;
+            case MotionEvent.ACTION_CANCEL:
+                setPressedPosition(-1, 0, 0);
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Moves the pressed state and the ripple to a row
+     *
+     * @param position The pressed row, -1 to release the pressed row
+     */
+    private void setPressedPosition(int position, float x, float y) {
+        if (mPressedBackground == null) {
+            mPressedPosition = position;
+            return;
+        }
+        if (position >= 0) {
+            mPressedPosition = position;
+            getRowBounds(position, mRowBounds);
+            mPressedBackground.setBounds(mRowBounds);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP)
+                mPressedBackground.setHotspot(x, y);
+            mPressedBackground.setState(STATE_PRESSED);
+        } else {
+            mPressedPosition = -1;
+            mPressedBackground.setState(STATE_RELEASED);
+        }
+        invalidate();
+    }
+
+    private void performItemClick(int position) {
+        playSoundEffect(SoundEffectConstants.CLICK);
+        mAccessibilityHelper.sendEventForVirtualView(position, AccessibilityEvent.TYPE_VIEW_CLICKED);
+        mClickListener.onRowClicked(this, position);
+    }
+
+    @Override
+    protected boolean verifyDrawable(@NonNull Drawable who) {
+        // Only icons of this view use it as their callback, they redraw it once they are loaded
+        return who == mPressedBackground || who instanceof AsyncIconDrawable || super.verifyDrawable(who);
+    }
+
+    @Override
+    public void jumpDrawablesToCurrentState() {
+        super.jumpDrawablesToCurrentState();
+        if (mPressedBackground != null)
+            mPressedBackground.jumpToCurrentState();
+    }
+
+    @Override
+    protected boolean dispatchHoverEvent(MotionEvent event) {
+        return mAccessibilityHelper.dispatchHoverEvent(event) || super.dispatchHoverEvent(event);
+    }
+
+    @Override
+    public boolean dispatchKeyEvent(KeyEvent event) {
+        return mAccessibilityHelper.dispatchKeyEvent(event) || super.dispatchKeyEvent(event);
+    }
+
+    @Override
+    protected void onFocusChanged(boolean gainFocus, int direction, Rect previouslyFocusedRect) {
+        super.onFocusChanged(gainFocus, direction, previouslyFocusedRect);
+        mAccessibilityHelper.onFocusChanged(gainFocus, direction, previouslyFocusedRect);
+    }
+
+    interface OnRowClickListener {
+        void onRowClicked(View row, int position);
+    }
+
+    /**
+     * Exposes every item as a virtual view with its label, state and click action
+     */
+    private final class AccessibilityHelper extends ExploreByTouchHelper {
+        private final Rect mBounds = new Rect();
+
+        AccessibilityHelper(View host) {
+            super(host);
+        }
+
+        @Override
+        protected int getVirtualViewAt(float x, float y) {
+            int position = getPositionAt(y);
+            return position >= 0 ? position : INVALID_ID;
+        }
+
+        @Override
+        protected void getVisibleVirtualViews(List<Integer> virtualViewIds) {
+            for (int i = 0; i < mItems.size(); i++)
+                virtualViewIds.add(i);
+        }
+
+        @Override
+        protected void onPopulateNodeForVirtualView(int virtualViewId, @NonNull AccessibilityNodeInfoCompat node) {
+            if (virtualViewId >= mItems.size()) {
+                // The items have changed since the framework asked for the node
+                node.setContentDescription("");
+                node.setBoundsInParent(new Rect(0, 0, 1, 1));
+                return;
+            }
+            node.setText(ResourcePreparer.getText(getContext(), mItems, virtualViewId));
+            node.setClassName(android.widget.Button.class.getName());
+            boolean enabled = isItemEnabled(virtualViewId);
+            node.setEnabled(enabled);
+            node.setClickable(enabled);
+            if (enabled)
+                node.addAction(AccessibilityNodeInfoCompat.ACTION_CLICK);
+            getRowBounds(virtualViewId, mBounds);
+            node.setBoundsInParent(mBounds);
+        }
+
+        @Override
+        protected boolean onPerformActionForVirtualView(int virtualViewId, int action, Bundle arguments) {
+            if (action == AccessibilityNodeInfoCompat.ACTION_CLICK && virtualViewId < mItems.size()
+                    && isItemEnabled(virtualViewId)) {
+                performItemClick(virtualViewId);
+                return true;
+            }
+            return false;
+        }
+    }
+}
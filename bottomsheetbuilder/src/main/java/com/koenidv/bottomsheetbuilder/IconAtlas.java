@@ -0,0 +1,185 @@
+package com.koenidv.bottomsheetbuilder;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import androidx.annotation.ColorInt;
+import androidx.annotation.DrawableRes;
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+import androidx.core.graphics.drawable.DrawableCompat;
+
+/**
+ * App-wide atlas of pre-rasterized icons. Every icon is inflated, tinted and drawn once per density and tint
+ * into a cell of a shared bitmap page, rows then only draw that cell.
+ * Icons are flattened, so this is only suitable for icons that don't change with their state, like most vector drawables.
+ * Can be used from any thread
+ */
+final class IconAtlas {
+
+    private static final int CELLS_PER_SIDE = 4;
+    private static final int MAX_PAGES = 4;
+
+    private static final Map<IconCache.IconKey, Cell> sCells = new HashMap<>();
+    private static final List<Page> sPages = new ArrayList<>();
+
+    private IconAtlas() {
+    }
+
+    /**
+     * Returns a tinted icon drawn from the atlas. Only the first request for an icon, color and density
+     * inflates and rasterizes the drawable
+     *
+     * @return A new drawable instance, or null if the icon can't be added to the atlas,
+     * e.g. because it doesn't exist, has no intrinsic size or the atlas is full
+     */
+    static synchronized Drawable get(Context context, @DrawableRes int drawableRes, @ColorInt int color) {
+        Resources resources = context.getResources();
+        IconCache.IconKey key = new IconCache.IconKey(drawableRes, color, resources.getDisplayMetrics().densityDpi);
+        Cell cell = sCells.get(key);
+        if (cell == null) {
+            cell = rasterize(context, drawableRes, color);
+            if (cell == null) return null;
+            sCells.put(key, cell);
+        }
+        return new AtlasDrawable(cell);
+    }
+
+    /**
+     * Drops the atlas, e.g. when the system is low on memory. Rows that still show an icon keep its page
+     */
+    static synchronized void clear() {
+        sCells.clear();
+        sPages.clear();
+    }
+
+    private static Cell rasterize(Context context, @DrawableRes int drawableRes, @ColorInt int color) {
+        Drawable drawable = ContextCompat.getDrawable(context, drawableRes);
+        if (drawable == null) return null;
+        int width = drawable.getIntrinsicWidth();
+        int height = drawable.getIntrinsicHeight();
+        if (width <= 0 || height <= 0) return null;
+        Page page = findPage(Math.max(width, height));
+        if (page == null) return null;
+
+        Rect cell = page.allocate();
+        int left = cell.left + (cell.width() - width) / 2;
+        int top = cell.top + (cell.height() - height) / 2;
+        drawable = DrawableCompat.wrap(drawable.mutate());
+        DrawableCompat.setTintList(drawable, IconCache.getColorStateList(color));
+        drawable.setBounds(left, top, left + width, top + height);
+        drawable.draw(page.mCanvas);
+        return new Cell(page.mBitmap, new Rect(left, top, left + width, top + height));
+    }
+
+    /**
+     * @return A page with a free cell of the size, or null if the atlas is full
+     */
+    private static Page findPage(int cellSize) {
+        for (Page page : sPages) {
+            if (page.mCellSize == cellSize && page.hasFreeCell())
+                return page;
+        }
+        if (sPages.size() >= MAX_PAGES) return null;
+        Page page = new Page(cellSize);
+        sPages.add(page);
+        return page;
+    }
+
+    /**
+     * A bitmap holding icons of the same size in a grid of cells
+     */
+    private static final class Page {
+        final int mCellSize;
+        final Bitmap mBitmap;
+        final Canvas mCanvas;
+        int mUsedCells = 0;
+
+        Page(int cellSize) {
+            mCellSize = cellSize;
+            mBitmap = Bitmap.createBitmap(cellSize * CELLS_PER_SIDE, cellSize * CELLS_PER_SIDE,
+                    Bitmap.Config.ARGB_8888);
+            mCanvas = new Canvas(mBitmap);
+        }
+
+        boolean hasFreeCell() {
+            return mUsedCells < CELLS_PER_SIDE * CELLS_PER_SIDE;
+        }
+
+        Rect allocate() {
+            int left = (mUsedCells % CELLS_PER_SIDE) * mCellSize;
+            int top = (mUsedCells / CELLS_PER_SIDE) * mCellSize;
+            mUsedCells++;
+            return new Rect(left, top, left + mCellSize, top + mCellSize);
+        }
+    }
+
+    /**
+     * The part of a page an icon has been drawn to
+     */
+    private static final class Cell {
+        final Bitmap mBitmap;
+        final Rect mSource;
+
+        Cell(Bitmap bitmap, Rect source) {
+            mBitmap = bitmap;
+            mSource = source;
+        }
+    }
+
+    /**
+     * Draws a cell of the atlas, without inflating or tinting anything
+     */
+    private static final class AtlasDrawable extends Drawable {
+        private final Cell mCell;
+        private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+        AtlasDrawable(Cell cell) {
+            mCell = cell;
+        }
+
+        @Override
+        public void draw(@NonNull Canvas canvas) {
+            canvas.drawBitmap(mCell.mBitmap, mCell.mSource, getBounds(), mPaint);
+        }
+
+        @Override
+        public int getIntrinsicWidth() {
+            return mCell.mSource.width();
+        }
+
+        @Override
+        public int getIntrinsicHeight() {
+            return mCell.mSource.height();
+        }
+
+        @Override
+        public void setAlpha(int alpha) {
+            mPaint.setAlpha(alpha);
+            invalidateSelf();
+        }
+
+        @Override
+        public void setColorFilter(ColorFilter colorFilter) {
+            mPaint.setColorFilter(colorFilter);
+            invalidateSelf();
+        }
+
+        @Override
+        public int getOpacity() {
+            return PixelFormat.TRANSLUCENT;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.koenidv.bottomsheetbuilder;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.content.res.Resources;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.util.LruCache;
+
+import androidx.annotation.ColorInt;
+import androidx.annotation.DrawableRes;
+import androidx.core.content.ContextCompat;
+import androidx.core.graphics.drawable.DrawableCompat;
+
+/**
+ * App-wide cache for tinted icons and color state lists.
+ * Rows with the same icon and color share one drawable constant state and one ColorStateList,
+ * across rows as well as across sheets
+ */
+final class IconCache {
+
+    private static final int MAX_ICONS = 64;
+    private static final int MAX_COLORS = 32;
+
+    private static final LruCache<IconKey, Drawable.ConstantState> sIcons = new LruCache<>(MAX_ICONS);
+    private static final LruCache<Integer, ColorStateList> sColors = new LruCache<>(MAX_COLORS);
+
+    private IconCache() {
+    }
+
+    /**
+     * @return A shared ColorStateList for a single color
+     */
+    static ColorStateList getColorStateList(@ColorInt int color) {
+        ColorStateList colorStateList = sColors.get(color);
+        if (colorStateList == null) {
+            colorStateList = ColorStateList.valueOf(color);
+            sColors.put(color, colorStateList);
+        }
+        return colorStateList;
+    }
+
+    /**
+     * Returns a tinted icon. Only the first request for an icon, color and density
+     * loads and tints the drawable, all following requests share its constant state
+     *
+     * @param context     The context to load the icon with
+     * @param drawableRes The icon's resource id
+     * @param color       The tint color
+     * @return A new drawable instance, or null if the icon doesn't exist
+     */
+    static Drawable getTintedIcon(Context context, @DrawableRes int drawableRes, @ColorInt int color) {
+        Resources resources = context.getResources();
+        IconKey key = new IconKey(drawableRes, color, resources.getDisplayMetrics().densityDpi);
+        Drawable.ConstantState state = sIcons.get(key);
+        if (state != null) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP)
+                return state.newDrawable(resources, context.getTheme());
+            return state.newDrawable(resources);
+        }
+
+        Drawable drawable = ContextCompat.getDrawable(context, drawableRes);
+        if (drawable == null) return null;
+        drawable = DrawableCompat.wrap(drawable.mutate());
+        DrawableCompat.setTintList(drawable, getColorStateList(color));
+        state = drawable.getConstantState();
+        if (state != null)
+            sIcons.put(key, state);
+        return drawable;
+    }
+
+    /**
+     * Drops all cached icons, e.g. when the system is low on memory
+     */
+    static void clear() {
+        sIcons.evictAll();
+        sColors.evictAll();
+    }
+
+    static final class IconKey {
+        private final int mDrawableRes;
+        private final int mColor;
+        private final int mDensity;
+
+        IconKey(int drawableRes, int color, int density) {
+            mDrawableRes = drawableRes;
+            mColor = color;
+            mDensity = density;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof IconKey)) return false;
+            IconKey other = (IconKey) o;
+            return mDrawableRes == other.mDrawableRes && mColor == other.mColor && mDensity == other.mDensity;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * mDrawableRes + mColor) + mDensity;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.koenidv.bottomsheetbuilder;
+
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Adapter for the virtualized list mode.
+ * Only the rows currently on screen exist as views, they are bound from {@link SheetItems}.
+ * Section headers and dividers are rows mapped by a {@link RowMap}.
+ * The list can be filtered to a subset of the items, clicks still report the item positions
+ */
+final class ItemAdapter extends RecyclerView.Adapter<ItemAdapter.ViewHolder> {
+
+    private final SheetItems mItems;
+    private final RowFactory mRowFactory;
+    private final View.OnClickListener mRowClickListener;
+    private RowMap mRowMap;
+    private int[] mPositions;
+
+    ItemAdapter(SheetItems items, RowFactory rowFactory, View.OnClickListener rowClickListener) {
+        mItems = items;
+        mRowFactory = rowFactory;
+        mRowClickListener = rowClickListener;
+        onSectionsChanged();
+    }
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        if (viewType == RowMap.TYPE_HEADER)
+            return new ViewHolder(mRowFactory.createSectionHeader());
+        if (viewType == RowMap.TYPE_DIVIDER)
+            return new ViewHolder(mRowFactory.createDivider());
+        ViewHolder holder = new ViewHolder(mRowFactory.createRow());
+        // One listener for all rows, it looks up the position of the clicked row
+        holder.itemView.setOnClickListener(mRowClickListener);
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        int viewType = holder.getItemViewType();
+        if (viewType == RowMap.TYPE_HEADER) {
+            mRowFactory.bindSectionHeader((TextView) holder.itemView, mItems, mRowMap.getSection(position));
+        } else if (viewType == RowMap.TYPE_ITEM) {
+            mRowFactory.bindRow((TextView) holder.itemView, mItems, getItemPosition(position));
+        }
+    }
+
+    @Override
+    public int getItemCount() {
+        if (mPositions != null)
+            return mPositions.length;
+        return mRowMap != null ? mRowMap.getRowCount() : mItems.size();
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        // Sections are hidden while the list is filtered
+        if (mPositions == null && mRowMap != null)
+            return mRowMap.getRowType(position);
+        return RowMap.TYPE_ITEM;
+    }
+
+    /**
+     * Maps the rows again after the sections of the items have changed. The caller has to notify about the changes
+     */
+    void onSectionsChanged() {
+        mRowMap = mItems.getSectionCount() > 0 ? new RowMap(mItems) : null;
+    }
+
+    /**
+     * @return Whether headers or dividers are shown between the items, unless the list is filtered
+     */
+    boolean hasSections() {
+        return mRowMap != null;
+    }
+
+    /**
+     * Shows only some items. The caller has to notify about the changes
+     *
+     * @param positions The item positions to show in ascending order, null to show all items
+     */
+    void setPositions(int[] positions) {
+        mPositions = positions;
+    }
+
+    /**
+     * @return The item positions currently shown, null if all items are shown
+     */
+    int[] getPositions() {
+        return mPositions;
+    }
+
+    /**
+     * @return The item position shown at a list position, -1 for section headers and dividers
+     */
+    int getItemPosition(int adapterPosition) {
+        if (mPositions != null)
+            return mPositions[adapterPosition];
+        return mRowMap != null ? mRowMap.getItemPosition(adapterPosition) : adapterPosition;
+    }
+
+    /**
+     * Notifies about changed items, considering the filter
+     *
+     * @param positions The positions of the changed items
+     */
+    void notifyItemsChanged(BitSet positions) {
+        if (mPositions != null) {
+            for (int i = positions.nextSetBit(0); i >= 0; i = positions.nextSetBit(i + 1)) {
+                int adapterPosition = Arrays.binarySearch(mPositions, i);
+                if (adapterPosition >= 0)
+                    notifyItemChanged(adapterPosition);
+            }
+            return;
+        }
+        int size = mItems.size();
+        int start = positions.nextSetBit(0);
+        while (start >= 0 && start < size) {
+            int end = Math.min(positions.nextClearBit(start), size);
+            if (mRowMap != null) {
+                // Headers within the range are rebound as well, that's cheaper than splitting it
+                int startRow = mRowMap.getItemRow(start);
+                notifyItemRangeChanged(startRow, mRowMap.getItemRow(end - 1) - startRow + 1);
+            } else {
+                notifyItemRangeChanged(start, end - start);
+            }
+            start = positions.nextSetBit(end);
+        }
+    }
+
+    static final class ViewHolder extends RecyclerView.ViewHolder {
+        ViewHolder(View itemView) {
+            super(itemView);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.koenidv.bottomsheetbuilder;
+
+import androidx.recyclerview.widget.DiffUtil;
+
+/**
+ * Compares two lists of items by their stable ids and contents
+ */
+final class ItemDiff extends DiffUtil.Callback {
+
+    private final SheetItems mOld;
+    private final SheetItems mNew;
+
+    ItemDiff(SheetItems oldItems, SheetItems newItems) {
+        mOld = oldItems;
+        mNew = newItems;
+    }
+
+    @Override
+    public int getOldListSize() {
+        return mOld.size();
+    }
+
+    @Override
+    public int getNewListSize() {
+        return mNew.size();
+    }
+
+    @Override
+    public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+        return mOld.isSameItem(oldItemPosition, mNew, newItemPosition);
+    }
+
+    @Override
+    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+        return mOld.hasSameContent(oldItemPosition, mNew, newItemPosition);
+    }
+}
@@ -0,0 +1,128 @@
+package com.koenidv.bottomsheetbuilder;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.TypedArray;
+import android.content.res.XmlResourceParser;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.util.LruCache;
+import android.util.Xml;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+
+import androidx.annotation.MenuRes;
+
+/**
+ * App-wide cache for parsed menu resources.
+ * A menu is parsed once per configuration, its items are then copied from the parsed model
+ */
+final class MenuCache {
+
+    private static final int MAX_MENUS = 16;
+
+    // Sorted by attribute id, as required by obtainStyledAttributes
+    private static final int[] ITEM_ATTRS = {
+            android.R.attr.icon,
+            android.R.attr.enabled,
+            android.R.attr.id,
+            android.R.attr.visible,
+            android.R.attr.title
+    };
+    private static final int ATTR_ICON = 0;
+    private static final int ATTR_ENABLED = 1;
+    private static final int ATTR_ID = 2;
+    private static final int ATTR_VISIBLE = 3;
+    private static final int ATTR_TITLE = 4;
+
+    // Sorted by attribute id
+    private static final int[] GROUP_ATTRS = {
+            android.R.attr.enabled,
+            android.R.attr.visible
+    };
+
+    private static final LruCache<Integer, ParsedMenu> sMenus = new LruCache<>(MAX_MENUS);
+
+    private MenuCache() {
+    }
+
+    /**
+     * Returns the visible items of a menu, parsing it only if it hasn't been parsed for the current configuration
+     */
+    static synchronized SheetItems get(Context context, @MenuRes int menuRes) {
+        Configuration configuration = context.getResources().getConfiguration();
+        ParsedMenu menu = sMenus.get(menuRes);
+        if (menu == null || !menu.mConfiguration.equals(configuration)) {
+            menu = new ParsedMenu(new Configuration(configuration), parse(context, menuRes));
+            sMenus.put(menuRes, menu);
+        }
+        return menu.mItems;
+    }
+
+    static synchronized void clear() {
+        sMenus.evictAll();
+    }
+
+    /**
+     * Reads the items of a menu, including items in groups. Items of sub menus are skipped
+     */
+    private static SheetItems parse(Context context, @MenuRes int menuRes) {
+        SheetItems items = new SheetItems();
+        XmlResourceParser parser = context.getResources().getXml(menuRes);
+        try {
+            AttributeSet attrs = Xml.asAttributeSet(parser);
+            int menuDepth = 0;
+            boolean groupVisible = true;
+            boolean groupEnabled = true;
+            for (int event = parser.getEventType(); event != XmlPullParser.END_DOCUMENT; event = parser.next()) {
+                if (event == XmlPullParser.START_TAG) {
+                    String name = parser.getName();
+                    if ("menu".equals(name)) {
+                        menuDepth++;
+                    } else if (menuDepth == 1 && "group".equals(name)) {
+                        TypedArray a = context.obtainStyledAttributes(attrs, GROUP_ATTRS);
+                        groupEnabled = a.getBoolean(0, true);
+                        groupVisible = a.getBoolean(1, true);
+                        a.recycle();
+                    } else if (menuDepth == 1 && "item".equals(name)) {
+                        TypedArray a = context.obtainStyledAttributes(attrs, ITEM_ATTRS);
+                        if (groupVisible && a.getBoolean(ATTR_VISIBLE, true)) {
+                            int titleRes = a.getResourceId(ATTR_TITLE, 0);
+                            String title = titleRes == 0 ? a.getString(ATTR_TITLE) : null;
+                            int position = items.add(title, titleRes, a.getResourceId(ATTR_ICON, 0), 0);
+                            items.setId(position, a.getResourceId(ATTR_ID, (int) SheetItems.NO_ID));
+                            items.setFlag(position, SheetItems.FLAG_DISABLED,
+                                    !groupEnabled || !a.getBoolean(ATTR_ENABLED, true));
+                        }
+                        a.recycle();
+                    }
+                } else if (event == XmlPullParser.END_TAG) {
+                    if ("menu".equals(parser.getName())) {
+                        menuDepth--;
+                    } else if (menuDepth == 1 && "group".equals(parser.getName())) {
+                        groupVisible = true;
+                        groupEnabled = true;
+                    }
+                }
+            }
+        } catch (XmlPullParserException | IOException e) {
+            Log.e("BottomSheetBuilder: ", "Can't read menu resource: " + e.getMessage());
+        } finally {
+            parser.close();
+        }
+        return items;
+    }
+
+    private static final class ParsedMenu {
+        final Configuration mConfiguration;
+        final SheetItems mItems;
+
+        ParsedMenu(Configuration configuration, SheetItems items) {
+            mConfiguration = configuration;
+            mItems = items;
+        }
+    }
+}
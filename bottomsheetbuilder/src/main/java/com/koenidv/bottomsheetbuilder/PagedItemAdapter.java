@@ -0,0 +1,49 @@
+package com.koenidv.bottomsheetbuilder;
+
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Adapter for items from a {@link BottomSheetItemSource}.
+ * Rows of pages that aren't in memory show a placeholder until the page is loaded
+ */
+final class PagedItemAdapter extends RecyclerView.Adapter<ItemAdapter.ViewHolder> {
+
+    private final PagedItems mItems;
+    private final RowFactory mRowFactory;
+    private final View.OnClickListener mRowClickListener;
+
+    PagedItemAdapter(PagedItems items, RowFactory rowFactory, View.OnClickListener rowClickListener) {
+        mItems = items;
+        mRowFactory = rowFactory;
+        mRowClickListener = rowClickListener;
+        items.setAdapter(this);
+    }
+
+    @NonNull
+    @Override
+    public ItemAdapter.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        ItemAdapter.ViewHolder holder = new ItemAdapter.ViewHolder(mRowFactory.createRow());
+        // One listener for all rows, it looks up the position of the clicked row
+        holder.itemView.setOnClickListener(mRowClickListener);
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ItemAdapter.ViewHolder holder, int position) {
+        SheetItems page = mItems.getPage(position);
+        if (page != null)
+            mRowFactory.bindRow((TextView) holder.itemView, page, mItems.getPositionInPage(position));
+        else
+            mRowFactory.bindRow((TextView) holder.itemView, mItems.getPlaceholder(), 0);
+    }
+
+    @Override
+    public int getItemCount() {
+        return mItems.size();
+    }
+}
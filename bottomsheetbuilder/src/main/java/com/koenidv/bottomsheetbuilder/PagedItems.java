@@ -0,0 +1,235 @@
+package com.koenidv.bottomsheetbuilder;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Items loaded page by page from a {@link BottomSheetItemSource}.
+ * Pages are loaded on an executor when a row close to them is bound,
+ * only the most recently used pages are kept in memory.
+ * Apart from loading, everything happens on the main thread
+ */
+final class PagedItems {
+
+    // Delay before the page after the loaded items is requested again, doubled after every failure
+    private static final long RETRY_DELAY_MS = 1000;
+    private static final int MAX_RETRIES = 5;
+
+    private final BottomSheetItemSource mSource;
+    private final Executor mExecutor;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final int mPageSize;
+    private final int mPrefetchDistance;
+    private final int mDefaultIcon;
+    private final int mDefaultColor;
+    private final String mTag;
+
+    private final Map<Integer, SheetItems> mPages;
+    private final BitSet mLoading = new BitSet();
+    private final SheetItems mPlaceholder = new SheetItems();
+    private int mCount = 0;
+    private boolean mComplete = false;
+    private int mRetries = 0;
+    private RecyclerView.Adapter<?> mAdapter;
+
+    /**
+     * @param maxPages     The maximum number of pages kept in memory
+     * @param defaultIcon  The icon used instead of the items' icons, 0 to keep them
+     * @param defaultColor The color of items that don't have one set
+     */
+    PagedItems(BottomSheetItemSource source, Executor executor, int pageSize, final int maxPages,
+               int defaultIcon, int defaultColor, String tag) {
+        mSource = source;
+        mExecutor = executor;
+        mPageSize = pageSize;
+        mPrefetchDistance = Math.max(1, pageSize / 2);
+        mDefaultIcon = defaultIcon;
+        mDefaultColor = defaultColor;
+        mTag = tag;
+        mPages = new LinkedHashMap<Integer, SheetItems>(maxPages + 1, 1f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, SheetItems> eldest) {
+                return size() > maxPages;
+            }
+        };
+        mPlaceholder.add("", 0, defaultColor);
+        mPlaceholder.setFlag(0, SheetItems.FLAG_DISABLED, true);
+        loadPage(0);
+    }
+
+    /**
+     * Sets the adapter to notify about loaded pages.
+     * If loading the next page has failed too often, the new adapter requests it again
+     */
+    void setAdapter(RecyclerView.Adapter<?> adapter) {
+        mAdapter = adapter;
+        if (adapter != null && !mComplete && mRetries >= MAX_RETRIES) {
+            mRetries = 0;
+            loadPage(mCount / mPageSize);
+        }
+    }
+
+    /**
+     * Stops notifying an adapter, unless another one has been set since
+     */
+    void detachAdapter(RecyclerView.Adapter<?> adapter) {
+        if (mAdapter == adapter)
+            mAdapter = null;
+    }
+
+    /**
+     * @return The number of items loaded so far
+     */
+    int size() {
+        return mCount;
+    }
+
+    /**
+     * Returns the page containing an item and loads pages that will be needed soon.
+     * If the page isn't in memory, {@link #getPlaceholder()} should be shown until it is loaded
+     *
+     * @return The page or null if it is being loaded
+     */
+    SheetItems getPage(int position) {
+        int page = position / mPageSize;
+        SheetItems items = mPages.get(page);
+        if (items == null)
+            loadPage(page);
+        if (!mComplete && position >= mCount - mPrefetchDistance)
+            loadPage(mCount / mPageSize);
+        return items;
+    }
+
+    /**
+     * @return The position of an item within its page
+     */
+    int getPositionInPage(int position) {
+        return position % mPageSize;
+    }
+
+    /**
+     * @return The id of an item, or {@link SheetItems#NO_ID} if its page isn't in memory
+     */
+    long getId(int position) {
+        SheetItems items = mPages.get(position / mPageSize);
+        return items != null ? items.getId(getPositionInPage(position)) : SheetItems.NO_ID;
+    }
+
+    /**
+     * @return A single disabled item without text or icon
+     */
+    SheetItems getPlaceholder() {
+        return mPlaceholder;
+    }
+
+    private void loadPage(final int page) {
+        if (mLoading.get(page)) return;
+        mLoading.set(page);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                SheetItems loaded;
+                try {
+                    loaded = convert(mSource.loadPage(page, mPageSize));
+                } catch (RuntimeException e) {
+                    if (mTag != null) {
+                        Log.e("BottomSheetBuilder: " + mTag + ": ", "Can't load page " + page + ".", e);
+                    } else {
+                        Log.e("BottomSheetBuilder: ", "Can't load page " + page + ".", e);
+                    }
+                    loaded = null;
+                }
+                final SheetItems items = loaded;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onPageLoaded(page, items);
+                    }
+                });
+            }
+        });
+    }
+
+    private SheetItems convert(List<BottomSheetItem> page) {
+        SheetItems items = new SheetItems();
+        int count = Math.min(page.size(), mPageSize);
+        for (int i = 0; i < count; i++) {
+            BottomSheetItem item = page.get(i);
+            int position = items.add(item.mText, item.mTextRes,
+                    mDefaultIcon != 0 ? mDefaultIcon : item.mIcon,
+                    item.mHasColor ? item.mColor : mDefaultColor);
+            items.setId(position, item.mId);
+            if (item.mIconUri != null)
+                items.setIconUri(position, item.mIconUri);
+            items.setFlag(position, SheetItems.FLAG_DISABLED, !item.mEnabled);
+        }
+        return items;
+    }
+
+    /**
+     * Requests the page after the loaded items again after a delay. No row might be bound
+     * that would request it, e.g. if it is the first page and the list is still empty
+     */
+    private void retryPage(final int page) {
+        if (mRetries >= MAX_RETRIES) {
+            if (mTag != null) {
+                Log.e("BottomSheetBuilder: " + mTag + ": ", "Can't load page " + page + ", giving up until another BottomSheet shows these items.");
+            } else {
+                Log.e("BottomSheetBuilder: ", "Can't load page " + page + ", giving up until another BottomSheet shows these items.");
+            }
+            return;
+        }
+        long delay = RETRY_DELAY_MS << mRetries;
+        mRetries++;
+        mMainHandler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                if (page * mPageSize == mCount)
+                    loadPage(page);
+            }
+        }, delay);
+    }
+
+    /**
+     * @param items The loaded items, or null if loading failed. A page that had been loaded before is requested
+     *              again when one of its rows is bound, the page after the loaded items is retried with a backoff
+     */
+    private void onPageLoaded(int page, SheetItems items) {
+        mLoading.clear(page);
+        int start = page * mPageSize;
+        if (items == null) {
+            if (start == mCount)
+                retryPage(page);
+            return;
+        }
+        if (start > mCount) {
+            // Pages are only requested right after the loaded ones
+            if (mTag != null) {
+                Log.e("BottomSheetBuilder: " + mTag + ": ", "Ignoring page " + page + " loaded out of order.");
+            } else {
+                Log.e("BottomSheetBuilder: ", "Ignoring page " + page + " loaded out of order.");
+            }
+            return;
+        }
+        mPages.put(page, items);
+        if (start == mCount) {
+            mRetries = 0;
+            mCount += items.size();
+            mComplete = items.size() < mPageSize;
+            if (mAdapter != null && items.size() > 0)
+                mAdapter.notifyItemRangeInserted(start, items.size());
+        } else if (mAdapter != null) {
+            // A page that had been dropped from memory, replace the placeholders
+            mAdapter.notifyItemRangeChanged(start, Math.min(items.size(), mCount - start));
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.koenidv.bottomsheetbuilder;
+
+import android.content.Context;
+import android.widget.TextView;
+
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
+
+/**
+ * Text layouts of the title and items, measured in the background.
+ * The measuring parameters are taken from template views on the main thread,
+ * {@link #compute(Context, SheetItems, int)} can then run on any thread
+ */
+final class PrecomputedTexts {
+
+    private final BottomSheetSpec mSpec;
+    private final PrecomputedTextCompat.Params mTitleParams;
+    private final PrecomputedTextCompat.Params mItemParams;
+    private PrecomputedTextCompat mTitle;
+    private String[] mSources = new String[0];
+    private PrecomputedTextCompat[] mTexts = new PrecomputedTextCompat[0];
+
+    private PrecomputedTexts(BottomSheetSpec spec, PrecomputedTextCompat.Params titleParams,
+                             PrecomputedTextCompat.Params itemParams) {
+        mSpec = spec;
+        mTitleParams = titleParams;
+        mItemParams = itemParams;
+    }
+
+    /**
+     * Reads the measuring parameters from templates of the title and the rows,
+     * so that no row is taken from the {@link RowPool}. Has to be called on the main thread
+     */
+    static PrecomputedTexts create(RowFactory rowFactory, BottomSheetSpec spec) {
+        return new PrecomputedTexts(spec,
+                TextViewCompat.getTextMetricsParams(rowFactory.createTitleTemplate()),
+                TextViewCompat.getTextMetricsParams(rowFactory.createRowTemplate()));
+    }
+
+    /**
+     * Measures the title and the texts of the first items
+     *
+     * @param count The number of items to measure
+     */
+    void compute(Context context, SheetItems items, int count) {
+        String title = mSpec.mTitle;
+        if (title == null && mSpec.mTitleRes != 0)
+            title = context.getString(mSpec.mTitleRes);
+        if (title != null)
+            mTitle = PrecomputedTextCompat.create(title, mTitleParams);
+
+        String[] sources = new String[count];
+        PrecomputedTextCompat[] texts = new PrecomputedTextCompat[count];
+        for (int i = 0; i < count; i++) {
+            sources[i] = ResourcePreparer.getText(context, items, i);
+            if (sources[i] != null)
+                texts[i] = PrecomputedTextCompat.create(sources[i], mItemParams);
+        }
+        mSources = sources;
+        mTexts = texts;
+    }
+
+    /**
+     * Sets the precomputed title, if there is one
+     *
+     * @return Whether the title has been set
+     */
+    boolean applyTitle(TextView title) {
+        return mTitle != null && apply(title, mTitle);
+    }
+
+    /**
+     * Sets the precomputed text of an item if it still matches the item's text
+     *
+     * @return Whether the text has been set
+     */
+    boolean applyItem(TextView row, String text, int position) {
+        return position < mTexts.length && mSources[position] == text
+                && mTexts[position] != null && apply(row, mTexts[position]);
+    }
+
+    private boolean apply(TextView textView, PrecomputedTextCompat text) {
+        try {
+            TextViewCompat.setPrecomputedText(textView, text);
+            return true;
+        } catch (IllegalArgumentException e) {
+            // The view has been styled differently than the template, measure it normally
+            return false;
+        }
+    }
+}
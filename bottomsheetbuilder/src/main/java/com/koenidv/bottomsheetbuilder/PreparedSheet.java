@@ -0,0 +1,633 @@
+package com.koenidv.bottomsheetbuilder;
+
+import android.content.Context;
+import android.content.DialogInterface;
+import android.os.Bundle;
+import android.os.Parcelable;
+import android.os.SystemClock;
+import android.util.DisplayMetrics;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewTreeObserver;
+import android.view.ViewGroup;
+import android.widget.EditText;
+import android.widget.FrameLayout;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import com.google.android.material.bottomsheet.BottomSheetBehavior;
+import com.google.android.material.bottomsheet.BottomSheetDialog;
+
+import java.util.BitSet;
+
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.ListUpdateCallback;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * A BottomSheetDialog with its content created from a {@link BottomSheetSpec}.
+ * Views and dialog are created once and can be shown again after being dismissed
+ */
+final class PreparedSheet {
+
+    private static final String STATE_BEHAVIOR = "bottomsheetbuilder:behavior";
+    private static final String STATE_LIST = "bottomsheetbuilder:list";
+    private static final String STATE_SELECTED = "bottomsheetbuilder:selected";
+    // The title is the first child of the layout, rows of the non-virtualized list follow it
+    private static final int FIRST_ROW_CHILD = 1;
+
+    private final Context mContext;
+    private final BottomSheetSpec mSpec;
+    private final SheetItems mItems;
+    private final RowFactory mRowFactory;
+    private final SheetLayout mLayout;
+    private final DialogPool.Entry mDialog;
+    private final BottomSheetDialog mBottomSheet;
+    private final boolean mFromPool;
+    private final boolean mMultiSelect;
+    private final BitSet mToggledRows = new BitSet();
+    private RecyclerView.Adapter<?> mAdapter;
+    private ItemAdapter mItemAdapter;
+    private SheetSearch mSearch;
+    private RecyclerView mRecyclerView;
+    private FlatItemsView mFlatView;
+    private boolean mReleaseRowsOnDismiss = false;
+    private boolean mRowsReleased = false;
+
+    private final View.OnClickListener mRowClickDispatcher = new View.OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            int which = getRowPosition(v);
+            if (which >= 0)
+                onItemClicked(v, which);
+        }
+    };
+
+    private BottomSheetBuilder.onItemClickListener mItemClickListener;
+    private BottomSheetBuilder.onItemIdClickListener mItemIdClickListener;
+    private BottomSheetBuilder.onItemsSelectedListener mItemsSelectedListener;
+    private BottomSheetBuilder.onSheetDismissedListener mDismissedListener;
+    private BottomSheetBuilder.onMetricsListener mMetricsListener;
+    private boolean mDismissedByAction = false;
+    private boolean mActionDelivered = false;
+    private long mLastTouchUpTime = 0;
+
+    PreparedSheet(Context context, BottomSheetSpec spec) {
+        this(context, spec, spec.mItems, new RowFactory(context, spec), null);
+    }
+
+    /**
+     * @param items      The items to show. Resolved resources and the selection are written into them,
+     *                   so they must not be shared with another sheet
+     * @param rowFactory The factory to create the rows with, it has to belong to the same spec
+     * @param metrics    Optional: Receives the time it takes to create the views and the dialog.
+     *                   Clicks are only timed if it is set
+     */
+    PreparedSheet(Context context, BottomSheetSpec spec, SheetItems items, RowFactory rowFactory,
+                  BottomSheetBuilder.onMetricsListener metrics) {
+        mContext = context;
+        mSpec = spec;
+        mItems = items;
+        mRowFactory = rowFactory;
+        // Items of an item source can't be selected
+        mMultiSelect = spec.mMultiSelect && spec.mPagedItems == null;
+        long start = 0;
+        if (metrics != null) {
+            start = System.nanoTime();
+            mRowFactory.setTouchListener(new View.OnTouchListener() {
+                @Override
+                public boolean onTouch(View v, MotionEvent event) {
+                    if (event.getActionMasked() == MotionEvent.ACTION_UP)
+                        mLastTouchUpTime = event.getEventTime();
+                    return false;
+                }
+            });
+        }
+        mLayout = createLayout();
+        if (metrics != null) {
+            long created = System.nanoTime();
+            metrics.onItemsCreated(spec.mTag, mRowFactory.getCreatedViews(),
+                    mRowFactory.getCreatedDrawables(), created - start);
+            start = created;
+        }
+
+        DialogPool.Entry dialog = DialogPool.take(context, spec.mSheetStyle);
+        mFromPool = dialog != null;
+        if (dialog == null)
+            dialog = DialogPool.Entry.create(context, spec.mSheetStyle);
+        mDialog = dialog;
+        mBottomSheet = dialog.mDialog;
+        // Wrapping the content keeps the container from measuring it a second time
+        dialog.mContainer.addView(mLayout, new FrameLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        setPeekHeight();
+        if (metrics != null)
+            metrics.onDialogCreated(spec.mTag, mFromPool, System.nanoTime() - start);
+        mBottomSheet.setOnDismissListener(new DialogInterface.OnDismissListener() {
+            @Override
+            public void onDismiss(DialogInterface dialog) {
+                if (mDismissedListener != null && !mDismissedByAction)
+                    mDismissedListener.onDismissed(mSpec.mTag);
+                // A kept sheet doesn't hold on to the listeners of its last showing
+                dropListeners();
+                if (mReleaseRowsOnDismiss)
+                    releaseRows();
+            }
+        });
+    }
+
+    /**
+     * Shows the dialog with the given listeners. They are dropped once the dialog is dismissed
+     */
+    void show(BottomSheetBuilder.onItemClickListener itemClickListener,
+              BottomSheetBuilder.onItemIdClickListener itemIdClickListener,
+              BottomSheetBuilder.onItemsSelectedListener itemsSelectedListener,
+              BottomSheetBuilder.onSheetDismissedListener dismissedListener,
+              BottomSheetBuilder.onMetricsListener metricsListener) {
+        setListeners(itemClickListener, itemIdClickListener, itemsSelectedListener, dismissedListener);
+        mMetricsListener = metricsListener;
+        mDismissedByAction = false;
+        mActionDelivered = false;
+        if (metricsListener != null)
+            measureFirstFrame(metricsListener);
+        mBottomSheet.show();
+    }
+
+    /**
+     * Reports the time until the next frame is about to be drawn,
+     * along with the views and icons created until then, including the rows of the first layout
+     */
+    private void measureFirstFrame(final BottomSheetBuilder.onMetricsListener metrics) {
+        final long start = System.nanoTime();
+        mLayout.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                metrics.onFirstFrame(mSpec.mTag, mRowFactory.getCreatedViews(),
+                        mRowFactory.getCreatedDrawables(), System.nanoTime() - start);
+                mLayout.getViewTreeObserver().removeOnPreDrawListener(this);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Sets the listeners without showing the dialog, for a dialog shown by a {@link BottomSheetFragment}
+     */
+    void setListeners(BottomSheetBuilder.onItemClickListener itemClickListener,
+                      BottomSheetBuilder.onItemIdClickListener itemIdClickListener,
+                      BottomSheetBuilder.onItemsSelectedListener itemsSelectedListener,
+                      BottomSheetBuilder.onSheetDismissedListener dismissedListener) {
+        mItemClickListener = itemClickListener;
+        mItemIdClickListener = itemIdClickListener;
+        mItemsSelectedListener = itemsSelectedListener;
+        mDismissedListener = dismissedListener;
+    }
+
+    private void dropListeners() {
+        mItemClickListener = null;
+        mItemIdClickListener = null;
+        mItemsSelectedListener = null;
+        mDismissedListener = null;
+        mMetricsListener = null;
+    }
+
+    /**
+     * Restores the selection of the items the sheet has been created from,
+     * so that every showing of a spec starts with the selection of the spec
+     */
+    void resetSelection(SheetItems items) {
+        if (!mMultiSelect) return;
+        mToggledRows.clear();
+        mItems.setSelection(items, mToggledRows);
+        refreshRows(mToggledRows);
+    }
+
+    /**
+     * @return The item positions currently shown in ascending order, null if all items are shown
+     */
+    int[] getShownPositions() {
+        return mItemAdapter != null && !mRowsReleased ? mItemAdapter.getPositions() : null;
+    }
+
+    BottomSheetDialog getDialog() {
+        return mBottomSheet;
+    }
+
+    /**
+     * @return The expanded state and the scroll position of the list
+     */
+    Bundle saveState() {
+        Bundle state = new Bundle();
+        View bottomSheet = mBottomSheet.findViewById(com.google.android.material.R.id.design_bottom_sheet);
+        if (bottomSheet != null)
+            state.putInt(STATE_BEHAVIOR, BottomSheetBehavior.from(bottomSheet).getState());
+        if (mRecyclerView != null && mRecyclerView.getLayoutManager() != null)
+            state.putParcelable(STATE_LIST, mRecyclerView.getLayoutManager().onSaveInstanceState());
+        if (mMultiSelect)
+            state.putIntArray(STATE_SELECTED, mItems.getSelectedPositions());
+        return state;
+    }
+
+    /**
+     * Restores a state from {@link #saveState()} before the dialog is shown,
+     * so that it appears in that state without being animated
+     */
+    void restoreState(Bundle state) {
+        View bottomSheet = mBottomSheet.findViewById(com.google.android.material.R.id.design_bottom_sheet);
+        int behaviorState = state.getInt(STATE_BEHAVIOR, BottomSheetBehavior.STATE_COLLAPSED);
+        if (bottomSheet != null && (behaviorState == BottomSheetBehavior.STATE_EXPANDED
+                || behaviorState == BottomSheetBehavior.STATE_COLLAPSED))
+            BottomSheetBehavior.from(bottomSheet).setState(behaviorState);
+        Parcelable listState = state.getParcelable(STATE_LIST);
+        if (listState != null && mRecyclerView != null && mRecyclerView.getLayoutManager() != null)
+            mRecyclerView.getLayoutManager().onRestoreInstanceState(listState);
+        int[] selected = state.getIntArray(STATE_SELECTED);
+        if (selected != null) {
+            SheetItems items = mItems;
+            BitSet changed = new BitSet();
+            items.clearSelection(changed);
+            for (int position : selected) {
+                if (items.contains(position)) {
+                    items.setSelected(position, true);
+                    changed.flip(position);
+                }
+            }
+            refreshRows(changed);
+        }
+    }
+
+    /**
+     * Dismisses the dialog without notifying any listener and drops the listeners.
+     * Rows are not pooled, as their Activity is being destroyed
+     */
+    void destroy() {
+        mReleaseRowsOnDismiss = false;
+        dropListeners();
+        mDismissedByAction = true;
+        mBottomSheet.dismiss();
+    }
+
+    /**
+     * Drops a sheet that has never been shown without destroying its Activity.
+     * Its rows and dialog are returned to the pools and the item source stops notifying it
+     */
+    void discard() {
+        destroy();
+        detachPagedItems();
+        releaseRows();
+        mDialog.mContainer.removeView(mLayout);
+        DialogPool.release(mDialog);
+    }
+
+    /**
+     * Returns the rows to the {@link RowPool} once the dialog is dismissed.
+     * The sheet can't be shown again afterwards
+     */
+    void setReleaseRowsOnDismiss(boolean release) {
+        mReleaseRowsOnDismiss = release;
+    }
+
+    /**
+     * Removes all rows and returns them to the {@link RowPool}
+     */
+    private void releaseRows() {
+        mRowsReleased = true;
+        if (mRecyclerView != null) {
+            // Swapping the adapter moves all rows to the RecyclerView's own pool.
+            // Unlike setAdapter(null), it keeps the pool instead of clearing it
+            RecyclerView.RecycledViewPool recycledViews = mRecyclerView.getRecycledViewPool();
+            recycledViews.setMaxRecycledViews(RowMap.TYPE_ITEM, Integer.MAX_VALUE);
+            mRecyclerView.swapAdapter(null, true);
+            RecyclerView.ViewHolder holder;
+            while ((holder = recycledViews.getRecycledView(RowMap.TYPE_ITEM)) != null)
+                mRowFactory.releaseRow((TextView) holder.itemView);
+        } else if (mFlatView == null) {
+            for (int i = mLayout.getChildCount() - 1; i >= FIRST_ROW_CHILD; i--) {
+                View row = mLayout.getChildAt(i);
+                mLayout.removeViewAt(i);
+                mRowFactory.releaseRow((TextView) row);
+            }
+        }
+    }
+
+    /**
+     * Stops the item source from notifying this sheet, so that a kept spec doesn't reference its Activity
+     */
+    void detachPagedItems() {
+        if (mSpec.mPagedItems != null)
+            mSpec.mPagedItems.detachAdapter(mAdapter);
+    }
+
+    /**
+     * @return Whether the dialog was taken from the {@link DialogPool}
+     */
+    boolean isFromPool() {
+        return mFromPool;
+    }
+
+    boolean isShowing() {
+        return mBottomSheet.isShowing();
+    }
+
+    void dismiss() {
+        mDismissedByAction = true;
+        mBottomSheet.dismiss();
+    }
+
+    /**
+     * Rebinds the rows of changed items, each row once
+     *
+     * @param positions The positions of the changed items
+     */
+    void refreshRows(BitSet positions) {
+        if (mRowsReleased) {
+            return;
+        } else if (mItemAdapter != null) {
+            mItemAdapter.notifyItemsChanged(positions);
+            return;
+        } else if (mAdapter != null) {
+            // Items from an item source can't be changed
+            return;
+        } else if (mFlatView != null) {
+            mFlatView.refreshItems(positions);
+            return;
+        }
+        int size = mItems.size();
+        for (int i = positions.nextSetBit(0); i >= 0 && i < size; i = positions.nextSetBit(i + 1))
+            mRowFactory.bindRow((TextView) mLayout.getChildAt(FIRST_ROW_CHILD + i), mItems, i);
+    }
+
+    /**
+     * Applies a diff after the items of the spec have been replaced.
+     * Only inserted, removed, moved and changed rows are touched
+     *
+     * @param diff The diff between the previous and the current items
+     */
+    void updateRows(DiffUtil.DiffResult diff) {
+        if (mRowsReleased) {
+            return;
+        } else if (mItemAdapter != null && (mItemAdapter.hasSections() || mItems.getSectionCount() > 0)) {
+            // The diff refers to item positions, which aren't list positions between sections
+            mItemAdapter.onSectionsChanged();
+            if (mSearch != null)
+                mSearch.onItemsReplaced();
+            mItemAdapter.notifyDataSetChanged();
+            return;
+        } else if (mSearch != null) {
+            // The diff doesn't apply to a filtered list
+            if (!mSearch.isFiltered())
+                diff.dispatchUpdatesTo(mItemAdapter);
+            mSearch.onItemsReplaced();
+            return;
+        } else if (mAdapter != null) {
+            diff.dispatchUpdatesTo(mAdapter);
+            setPeekHeight();
+            return;
+        } else if (mFlatView != null) {
+            mFlatView.getLayoutParams().height = mFlatView.getContentHeight();
+            mFlatView.onItemsChanged();
+            setPeekHeight();
+            return;
+        }
+        diff.dispatchUpdatesTo(new ListUpdateCallback() {
+            @Override
+            public void onInserted(int position, int count) {
+                // Rows are bound below, positions are not final while the diff is dispatched
+                for (int i = 0; i < count; i++)
+                    mLayout.addView(createItemRow(), FIRST_ROW_CHILD + position + i);
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                for (int i = FIRST_ROW_CHILD + position + count - 1; i >= FIRST_ROW_CHILD + position; i--) {
+                    View row = mLayout.getChildAt(i);
+                    mLayout.removeViewAt(i);
+                    mRowFactory.releaseRow((TextView) row);
+                }
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                View row = mLayout.getChildAt(FIRST_ROW_CHILD + fromPosition);
+                mLayout.removeViewAt(FIRST_ROW_CHILD + fromPosition);
+                mLayout.addView(row, FIRST_ROW_CHILD + toPosition);
+            }
+
+            @Override
+            public void onChanged(int position, int count, Object payload) {
+            }
+        });
+        // Unchanged properties are skipped while binding, so this only updates new and changed rows
+        for (int i = 0; i < mItems.size(); i++) {
+            TextView row = (TextView) mLayout.getChildAt(FIRST_ROW_CHILD + i);
+            mRowFactory.bindRow(row, mItems, i);
+            row.setId(i);
+        }
+        setPeekHeight();
+    }
+
+
+    /*
+     *
+     * Rendering
+     *
+     */
+
+    /**
+     * Creates the content of the BottomSheet from the title and the list of items
+     */
+    private SheetLayout createLayout() {
+        SheetItems items = mItems;
+        SheetLayout layout = new SheetLayout(mContext);
+        TextView titleTextView = mRowFactory.createTitle();
+        layout.addView(titleTextView, new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, mSpec.mItemHeight));
+
+        if (mSpec.mSearchExecutor != null && mSpec.mPagedItems == null) {
+            EditText searchField = mRowFactory.createSearchField();
+            layout.addView(searchField);
+            layout.addView(createRecyclerView());
+            mSearch = new SheetSearch(mContext, mItems, mItemAdapter, mSpec.mSearchExecutor);
+            searchField.addTextChangedListener(mSearch);
+        } else if (mSpec.mVirtualized || mSpec.mPagedItems != null || mMultiSelect
+                || mSpec.mGridColumns > 0 || items.getSectionCount() > 0) {
+            layout.addView(createRecyclerView());
+        } else if (mSpec.mFlat) {
+            mFlatView = mRowFactory.createFlatView(items, new FlatItemsView.OnRowClickListener() {
+                @Override
+                public void onRowClicked(View row, int position) {
+                    onItemClicked(row, position);
+                }
+            });
+            layout.addView(mFlatView, new LinearLayout.LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT, mFlatView.getContentHeight()));
+            layout.setFixedHeights(true);
+        }
+        if (mMultiSelect) {
+            // The list shrinks to keep the button on screen
+            ((LinearLayout.LayoutParams) mRecyclerView.getLayoutParams()).weight = 1;
+            View confirmButton = mRowFactory.createConfirmButton();
+            confirmButton.setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View v) {
+                    onSelectionConfirmed();
+                }
+            });
+            layout.addView(confirmButton);
+        } else if (mRecyclerView == null && mFlatView == null) {
+            for (int i = 0; i < items.size(); i++) {
+                TextView itemTextView = createItemRow();
+                mRowFactory.bindRow(itemTextView, items, i);
+                itemTextView.setId(i);
+                layout.addView(itemTextView);
+            }
+            // Space below the last item, or below the title if there are no items
+            layout.setPadding(0, 0, 0, mSpec.mItemPadding / 2);
+            layout.setFixedHeights(true);
+        }
+        return layout;
+    }
+
+    /**
+     * Creates an unbound row that reports clicks with its current position
+     */
+    private TextView createItemRow() {
+        TextView row = mRowFactory.createRow();
+        row.setOnClickListener(mRowClickDispatcher);
+        return row;
+    }
+
+    /**
+     * @return The item position of a row, as it is now rather than when the row was created,
+     * or -1 if the row isn't part of the list anymore
+     */
+    private int getRowPosition(View row) {
+        if (mRecyclerView != null) {
+            int adapterPosition = mRecyclerView.getChildAdapterPosition(row);
+            if (adapterPosition == RecyclerView.NO_POSITION)
+                return -1;
+            return mItemAdapter != null ? mItemAdapter.getItemPosition(adapterPosition) : adapterPosition;
+        }
+        return mLayout.indexOfChild(row) - FIRST_ROW_CHILD;
+    }
+
+    /**
+     * @return The stable id of an item, -1 if it doesn't have one
+     */
+    private long getItemId(int which) {
+        if (mSpec.mPagedItems != null)
+            return mSpec.mPagedItems.getId(which);
+        return mItems.contains(which) ? mItems.getId(which) : SheetItems.NO_ID;
+    }
+
+    /**
+     * @return The height of the content computed from the items, as rows have a fixed height,
+     * or -1 if it is only known after measuring
+     */
+    private int getContentHeight() {
+        int height = mLayout.getContentHeight();
+        if (height >= 0 || mItemAdapter == null || mSearch != null || mMultiSelect
+                || mSpec.mGridColumns > 0 || mItemAdapter.hasSections())
+            return height;
+        // A plain virtualized list below the title
+        View title = mLayout.getChildAt(0);
+        return (title.getVisibility() != View.GONE ? mSpec.mItemHeight : 0)
+                + mItemAdapter.getItemCount() * mSpec.mItemHeight + mRecyclerView.getPaddingBottom();
+    }
+
+    /**
+     * Sets the peek height from the content height, so that the behavior knows it up front
+     * instead of measuring the content again before it can position and animate the sheet.
+     * It's the behavior's automatic peek height, based on the screen rather than the measured parent
+     */
+    private void setPeekHeight() {
+        int contentHeight = getContentHeight();
+        if (contentHeight < 0) return;
+        View bottomSheet = mBottomSheet.findViewById(com.google.android.material.R.id.design_bottom_sheet);
+        if (bottomSheet == null) return;
+        DisplayMetrics metrics = mContext.getResources().getDisplayMetrics();
+        int minPeekHeight = mContext.getResources().getDimensionPixelSize(
+                com.google.android.material.R.dimen.design_bottom_sheet_peek_height_min);
+        int autoPeekHeight = Math.max(minPeekHeight, metrics.heightPixels - metrics.widthPixels * 9 / 16);
+        BottomSheetBehavior.from(bottomSheet).setPeekHeight(Math.min(contentHeight, autoPeekHeight));
+    }
+
+    /**
+     * Creates the RecyclerView for the virtualized list
+     */
+    private RecyclerView createRecyclerView() {
+        RecyclerView recyclerView = new RecyclerView(mContext);
+        mRecyclerView = recyclerView;
+        if (mSpec.mGridColumns > 0) {
+            final GridLayoutManager layoutManager = new GridLayoutManager(mContext, mSpec.mGridColumns);
+            GridLayoutManager.SpanSizeLookup spanSizeLookup = new GridLayoutManager.SpanSizeLookup() {
+                @Override
+                public int getSpanSize(int position) {
+                    // Headers and dividers span all columns
+                    return mAdapter.getItemViewType(position) == RowMap.TYPE_ITEM ? 1 : layoutManager.getSpanCount();
+                }
+            };
+            spanSizeLookup.setSpanIndexCacheEnabled(true);
+            layoutManager.setSpanSizeLookup(spanSizeLookup);
+            recyclerView.setLayoutManager(layoutManager);
+        } else {
+            recyclerView.setLayoutManager(new LinearLayoutManager(mContext));
+        }
+        recyclerView.setLayoutParams(new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        recyclerView.setPadding(0, 0, 0, mSpec.mItemPadding / 2);
+        recyclerView.setClipToPadding(false);
+        if (mSpec.mPagedItems != null) {
+            mAdapter = new PagedItemAdapter(mSpec.mPagedItems, mRowFactory, mRowClickDispatcher);
+        } else {
+            mItemAdapter = new ItemAdapter(mItems, mRowFactory, mRowClickDispatcher);
+            mAdapter = mItemAdapter;
+        }
+        recyclerView.setAdapter(mAdapter);
+        return recyclerView;
+    }
+
+    /**
+     * Notifies the listeners about a click and dismisses the BottomSheet.
+     * Only the first click is delivered, further taps until the dialog is gone are ignored
+     */
+    private void onItemClicked(View view, int which) {
+        if (mActionDelivered)
+            return;
+        if (mMetricsListener != null && mLastTouchUpTime != 0) {
+            mMetricsListener.onItemClickDispatched(mSpec.mTag, which,
+                    (SystemClock.uptimeMillis() - mLastTouchUpTime) * 1000000L);
+            mLastTouchUpTime = 0;
+        }
+        if (mMultiSelect) {
+            SheetItems items = mItems;
+            items.setSelected(which, !items.isSelected(which));
+            mToggledRows.clear();
+            mToggledRows.set(which);
+            refreshRows(mToggledRows);
+        } else if (mItemClickListener != null || mItemIdClickListener != null) {
+            mActionDelivered = true;
+            if (mItemClickListener != null)
+                mItemClickListener.onItemClicked(view, which, mSpec.mTag);
+            if (mItemIdClickListener != null)
+                mItemIdClickListener.onItemClicked(view, getItemId(which), which, mSpec.mTag);
+            mDismissedByAction = true;
+            mBottomSheet.dismiss();
+        }
+    }
+
+    /**
+     * Delivers the selected positions and dismisses the BottomSheet, at most once per showing
+     */
+    private void onSelectionConfirmed() {
+        if (mActionDelivered)
+            return;
+        mActionDelivered = true;
+        if (mItemsSelectedListener != null)
+            mItemsSelectedListener.onItemsSelected(mItems.getSelectedPositions(), mSpec.mTag);
+        mDismissedByAction = true;
+        mBottomSheet.dismiss();
+    }
+}
@@ -0,0 +1,48 @@
+package com.koenidv.bottomsheetbuilder;
+
+import android.content.Context;
+
+/**
+ * Resolves the resources of a {@link SheetItems} before its rows are bound.
+ * {@link #prepare(Context, SheetItems, int, boolean)} can be called from any thread
+ */
+final class ResourcePreparer {
+
+    private ResourcePreparer() {
+    }
+
+    /**
+     * Returns the text of an item, resolving and storing it first if it is a resource
+     */
+    static String getText(Context context, SheetItems items, int position) {
+        String text = items.getText(position);
+        if (text == null && items.getTextRes(position) != 0) {
+            text = context.getString(items.getTextRes(position));
+            items.setText(position, text);
+        }
+        return text;
+    }
+
+    /**
+     * Resolves all texts and loads all tinted icons into the {@link IconCache} or {@link IconAtlas},
+     * so that binding the rows doesn't have to load any resources
+     *
+     * @param count     The number of items to prepare, starting at the first one
+     * @param iconAtlas Whether icons are drawn from the {@link IconAtlas}
+     */
+    static void prepare(Context context, SheetItems items, int count, boolean iconAtlas) {
+        int lastIcon = 0;
+        int lastColor = 0;
+        for (int i = 0; i < count; i++) {
+            getText(context, items, i);
+            int icon = items.getIcon(i);
+            int color = RowFactory.getItemColor(items, i);
+            // Consecutive items mostly share their icon, only look up new combinations
+            if (icon != 0 && (icon != lastIcon || color != lastColor)) {
+                RowFactory.getIcon(context, icon, color, iconAtlas);
+                lastIcon = icon;
+                lastColor = color;
+            }
+        }
+    }
+}
@@ -0,0 +1,429 @@
+package com.koenidv.bottomsheetbuilder;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.text.TextUtils;
+import android.util.TypedValue;
+import android.view.Gravity;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.inputmethod.EditorInfo;
+import android.widget.Button;
+import android.widget.EditText;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import androidx.annotation.ColorInt;
+import androidx.annotation.DrawableRes;
+import androidx.core.content.ContextCompat;
+import androidx.core.widget.TextViewCompat;
+
+/**
+ * Creates the title and item rows of a BottomSheet and binds them to a {@link SheetItems} position
+ */
+final class RowFactory {
+
+    private static final int DISABLED_ALPHA = 0x61;
+
+    private final Context mContext;
+    private final BottomSheetSpec mSpec;
+    private final StyleCache.Style mStyle;
+    private final int mItemHeight;
+    private final int mItemPadding;
+    private final int mDrawablePadding;
+    private final boolean mMultiSelect;
+    private final boolean mGrid;
+    private final int mIconSize;
+    private Drawable.ConstantState mCheckedIndicator;
+    private Drawable.ConstantState mUncheckedIndicator;
+    private PrecomputedTexts mPrecomputedTexts;
+    private View.OnTouchListener mTouchListener;
+    private int mCreatedViews = 0;
+    private int mCreatedDrawables = 0;
+
+    RowFactory(Context context, BottomSheetSpec spec) {
+        mContext = context;
+        mSpec = spec;
+        mStyle = StyleCache.get(context);
+        mItemHeight = spec.mItemHeight;
+        mItemPadding = spec.mItemPadding;
+        mDrawablePadding = spec.mDrawablePadding;
+        // Items of an item source can't be selected
+        mMultiSelect = spec.mMultiSelect && spec.mPagedItems == null;
+        mGrid = spec.mGridColumns > 0;
+        mIconSize = mGrid ? mStyle.mIconSize * 2 : mStyle.mIconSize;
+    }
+
+    /**
+     * Sets text layouts that have been measured in the background
+     */
+    void setPrecomputedTexts(PrecomputedTexts precomputedTexts) {
+        mPrecomputedTexts = precomputedTexts;
+    }
+
+    /**
+     * Sets a listener that is added to every row created from now on
+     */
+    void setTouchListener(View.OnTouchListener touchListener) {
+        mTouchListener = touchListener;
+    }
+
+    /**
+     * @return The number of views created so far
+     */
+    int getCreatedViews() {
+        return mCreatedViews;
+    }
+
+    /**
+     * @return The number of icons set so far
+     */
+    int getCreatedDrawables() {
+        return mCreatedDrawables;
+    }
+
+    /**
+     * Creates the title view from the title of the spec
+     */
+    TextView createTitle() {
+        mCreatedViews++;
+        TextView titleTextView = new TextView(mContext);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            titleTextView.setTextAppearance(mSpec.mTitleStyle);
+        } else {
+            titleTextView.setTextAppearance(mContext, mSpec.mTitleStyle);
+        }
+        if (mSpec.mTitleColor != null)
+            titleTextView.setTextColor(mSpec.mTitleColor);
+        titleTextView.setGravity(Gravity.CENTER_VERTICAL);
+        titleTextView.setHeight(mItemHeight);
+        titleTextView.setPadding(mItemPadding, 0, mItemPadding, 0);
+        if (mPrecomputedTexts != null && mPrecomputedTexts.applyTitle(titleTextView)) {
+            return titleTextView;
+        } else if (mSpec.mTitle != null) {
+            titleTextView.setText(mSpec.mTitle);
+        } else if (mSpec.mTitleRes != 0) {
+            titleTextView.setText(mSpec.mTitleRes);
+        } else {
+            titleTextView.setVisibility(View.GONE);
+        }
+        return titleTextView;
+    }
+
+    /**
+     * Creates the search field shown below the title
+     */
+    EditText createSearchField() {
+        mCreatedViews++;
+        EditText searchField = new EditText(mContext);
+        searchField.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT));
+        searchField.setMinimumHeight(mItemHeight);
+        searchField.setPadding(mItemPadding, 0, mItemPadding, 0);
+        searchField.setGravity(Gravity.CENTER_VERTICAL);
+        searchField.setSingleLine(true);
+        searchField.setImeOptions(EditorInfo.IME_ACTION_SEARCH);
+        searchField.setTextSize(TypedValue.COMPLEX_UNIT_PX, mStyle.mItemTextSize);
+        searchField.setHint(R.string.bottomsheetbuilder_search_hint);
+        return searchField;
+    }
+
+    /**
+     * Creates an unbound section header
+     */
+    TextView createSectionHeader() {
+        mCreatedViews++;
+        TextView header = new TextView(mContext);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            header.setTextAppearance(android.R.style.TextAppearance_DeviceDefault_Small);
+        } else {
+            header.setTextAppearance(mContext, android.R.style.TextAppearance_DeviceDefault_Small);
+        }
+        header.setGravity(Gravity.CENTER_VERTICAL);
+        header.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, mItemHeight));
+        header.setPadding(mItemPadding, 0, mItemPadding, 0);
+        return header;
+    }
+
+    /**
+     * Sets the title of a section to a header
+     */
+    void bindSectionHeader(TextView header, SheetItems items, int section) {
+        if (items.getSectionText(section) != null) {
+            header.setText(items.getSectionText(section));
+        } else {
+            header.setText(items.getSectionTextRes(section));
+        }
+    }
+
+    /**
+     * Creates the divider shown for a section without title
+     */
+    View createDivider() {
+        mCreatedViews++;
+        View divider = new View(mContext);
+        ViewGroup.MarginLayoutParams params = new ViewGroup.MarginLayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, mStyle.mDividerHeight);
+        params.setMargins(0, mItemPadding / 2, 0, mItemPadding / 2);
+        divider.setLayoutParams(params);
+        if (mStyle.mDivider != 0)
+            divider.setBackgroundResource(mStyle.mDivider);
+        return divider;
+    }
+
+    /**
+     * Creates the button confirming the selection of a multi-select sheet
+     */
+    Button createConfirmButton() {
+        mCreatedViews++;
+        Button button = new Button(mContext, null, android.R.attr.borderlessButtonStyle);
+        LinearLayout.LayoutParams params = new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.WRAP_CONTENT, mItemHeight);
+        params.gravity = Gravity.END;
+        params.setMargins(mItemPadding / 2, 0, mItemPadding / 2, mItemPadding / 2);
+        button.setLayoutParams(params);
+        button.setText(R.string.bottomsheetbuilder_confirm);
+        return button;
+    }
+
+    /**
+     * Create a pre-formatted row without text or icon, or takes one from the {@link RowPool}.
+     * In a grid, this is a cell with the icon above the text
+     */
+    TextView createRow() {
+        if (mGrid)
+            return createCell();
+        TextView row = RowPool.acquire(mContext, mStyle);
+        if (row == null) {
+            mCreatedViews++;
+            row = new TextView(mContext);
+            row.setGravity(Gravity.CENTER_VERTICAL);
+            // Text appearance and background are resolved once per theme by StyleCache
+            row.setTextSize(TypedValue.COMPLEX_UNIT_PX, mStyle.mItemTextSize);
+            row.setTypeface(mStyle.mItemTypeface);
+            row.setBackgroundResource(mStyle.mItemBackground);
+        }
+        if (mTouchListener != null)
+            row.setOnTouchListener(mTouchListener);
+        row.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, mItemHeight));
+        row.setPadding(mItemPadding, 0, mItemPadding, 0);
+        row.setCompoundDrawablePadding(mDrawablePadding);
+        return row;
+    }
+
+    /**
+     * Creates a view with the text appearance of the title, e.g. to read text measuring parameters from.
+     * It isn't counted as a created view
+     */
+    TextView createTitleTemplate() {
+        TextView template = new TextView(mContext);
+        TextViewCompat.setTextAppearance(template, mSpec.mTitleStyle);
+        return template;
+    }
+
+    /**
+     * Creates a view with the text appearance of the rows, e.g. to read text measuring parameters from.
+     * It is neither taken from the {@link RowPool} nor counted as a created view
+     */
+    TextView createRowTemplate() {
+        TextView template = new TextView(mContext);
+        template.setTextSize(TypedValue.COMPLEX_UNIT_PX, mStyle.mItemTextSize);
+        template.setTypeface(mStyle.mItemTypeface);
+        return template;
+    }
+
+    /**
+     * Creates a grid cell. Cells differ from rows, so they are not pooled
+     */
+    private TextView createCell() {
+        mCreatedViews++;
+        TextView cell = new TextView(mContext);
+        cell.setGravity(Gravity.CENTER_HORIZONTAL | Gravity.TOP);
+        cell.setTextSize(TypedValue.COMPLEX_UNIT_PX, mStyle.mItemTextSize);
+        cell.setTypeface(mStyle.mItemTypeface);
+        cell.setBackgroundResource(mStyle.mItemBackground);
+        cell.setMaxLines(2);
+        cell.setEllipsize(TextUtils.TruncateAt.END);
+        if (mTouchListener != null)
+            cell.setOnTouchListener(mTouchListener);
+        cell.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, mItemHeight * 2));
+        cell.setPadding(mItemPadding / 2, mItemPadding, mItemPadding / 2, 0);
+        cell.setCompoundDrawablePadding(mDrawablePadding / 2);
+        return cell;
+    }
+
+    /**
+     * Creates a single view drawing all items, used instead of rows in flat mode
+     */
+    FlatItemsView createFlatView(SheetItems items, FlatItemsView.OnRowClickListener clickListener) {
+        mCreatedViews++;
+        FlatItemsView view = new FlatItemsView(mContext, items, mStyle, mItemHeight, mItemPadding,
+                mDrawablePadding, mSpec.mIconAtlas, clickListener);
+        if (mTouchListener != null)
+            view.setOnTouchListener(mTouchListener);
+        return view;
+    }
+
+    /**
+     * Returns a row that isn't used anymore to the {@link RowPool}
+     */
+    void releaseRow(TextView row) {
+        if (!mGrid)
+            RowPool.release(mContext, mStyle, row);
+    }
+
+    /**
+     * Sets text, color, icon and state of an item to a row.
+     * Properties that are already bound are skipped, so rebinding an unchanged row
+     * neither requests a layout nor invalidates it
+     */
+    void bindRow(TextView row, SheetItems items, int position) {
+        BoundState state = (BoundState) row.getTag();
+        if (state == null) {
+            state = new BoundState();
+            row.setTag(state);
+        }
+        boolean enabled = !items.hasFlag(position, SheetItems.FLAG_DISABLED);
+        boolean selected = mMultiSelect && items.isSelected(position);
+        int color = getItemColor(items, position);
+        String text = ResourcePreparer.getText(mContext, items, position);
+        if (!state.mBound || !TextUtils.equals(text, state.mText)) {
+            if (mPrecomputedTexts == null || !mPrecomputedTexts.applyItem(row, text, position))
+                row.setText(text);
+            state.mText = text;
+        }
+        if (!state.mBound || color != state.mColor)
+            row.setTextColor(IconCache.getColorStateList(color));
+        if (row.isEnabled() != enabled)
+            row.setEnabled(enabled);
+        if (row.isSelected() != selected)
+            row.setSelected(selected);
+        int icon = items.getIcon(position);
+        String iconUri = items.getIconUri(position);
+        if (iconUri != null) {
+            if (!state.mBound || !iconUri.equals(state.mIconUri) || (mMultiSelect && selected != state.mSelected))
+                setRowIconUri(row, iconUri, color, selected);
+        } else if (!state.mBound || state.mIconUri != null || icon != state.mIcon
+                || (icon != 0 && color != state.mColor)) {
+            setRowIcon(row, icon, color, selected);
+        } else if (mMultiSelect && selected != state.mSelected) {
+            // Only the check indicator changed, the icon is kept
+            setRowDrawables(row, getStartDrawable(row), getCheckIndicator(selected));
+        }
+        state.mIcon = icon;
+        state.mIconUri = iconUri;
+        state.mColor = color;
+        state.mSelected = selected;
+        state.mBound = true;
+    }
+
+    /**
+     * What has last been bound to a row, kept as the row's tag
+     */
+    private static final class BoundState {
+        boolean mBound = false;
+        String mText;
+        int mIcon;
+        String mIconUri;
+        int mColor;
+        boolean mSelected;
+    }
+
+    /**
+     * @return The color an item is shown in, considering its state
+     */
+    static int getItemColor(SheetItems items, int position) {
+        if (items.hasFlag(position, SheetItems.FLAG_DISABLED))
+            return (items.getColor(position) & 0x00FFFFFF) | (DISABLED_ALPHA << 24);
+        return items.getColor(position);
+    }
+
+    /**
+     * @param iconAtlas Whether to draw the icon from the {@link IconAtlas} if possible
+     * @return A tinted icon, or null if it doesn't exist
+     */
+    static Drawable getIcon(Context context, @DrawableRes int icon, @ColorInt int color, boolean iconAtlas) {
+        Drawable drawable = iconAtlas ? IconAtlas.get(context, icon, color) : null;
+        return drawable != null ? drawable : IconCache.getTintedIcon(context, icon, color);
+    }
+
+    /**
+     * Sets or clears the tinted icon of a row, and its check indicator in multi-select mode
+     */
+    private void setRowIcon(TextView row, @DrawableRes int icon, @ColorInt int color, boolean selected) {
+        Drawable drawable = null;
+        if (icon != 0) {
+            drawable = getIcon(mContext, icon, color, mSpec.mIconAtlas);
+            mCreatedDrawables++;
+        }
+        setRowDrawables(row, drawable, mMultiSelect ? getCheckIndicator(selected) : null);
+    }
+
+    /**
+     * Sets an icon loaded by {@link BitmapIconCache}. A row that already shows such an icon keeps its drawable,
+     * which shows a placeholder of the same size until the new icon is loaded, so the row isn't laid out again
+     */
+    private void setRowIconUri(TextView row, String iconUri, @ColorInt int color, boolean selected) {
+        Drawable current = getStartDrawable(row);
+        AsyncIconDrawable icon;
+        if (current instanceof AsyncIconDrawable) {
+            icon = (AsyncIconDrawable) current;
+        } else {
+            icon = new AsyncIconDrawable(mIconSize, color);
+            mCreatedDrawables++;
+        }
+        BitmapIconCache.load(mContext, iconUri, mIconSize, icon);
+        if (icon != current || mMultiSelect)
+            setRowDrawables(row, icon, mMultiSelect ? getCheckIndicator(selected) : null);
+    }
+
+    /**
+     * Sets the icon and check indicator to the start and end of a row, or the top and bottom of a cell
+     */
+    private void setRowDrawables(TextView row, Drawable start, Drawable end) {
+        if (mGrid) {
+            row.setCompoundDrawablesWithIntrinsicBounds(null, start, null, end);
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            row.setCompoundDrawablesRelativeWithIntrinsicBounds(start, null, end, null);
+        } else {
+            row.setCompoundDrawablesWithIntrinsicBounds(start, null, end, null);
+        }
+    }
+
+    private Drawable getStartDrawable(TextView row) {
+        if (mGrid)
+            return row.getCompoundDrawables()[1];
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1)
+            return row.getCompoundDrawablesRelative()[0];
+        return row.getCompoundDrawables()[0];
+    }
+
+    /**
+     * Returns the theme's checkbox drawable in its checked or unchecked state.
+     * Rows aren't Checkable, so the drawable for the state is picked once and set as it is
+     */
+    private Drawable getCheckIndicator(boolean checked) {
+        Drawable.ConstantState state = checked ? mCheckedIndicator : mUncheckedIndicator;
+        if (state != null) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP)
+                return state.newDrawable(mContext.getResources(), mContext.getTheme());
+            return state.newDrawable(mContext.getResources());
+        }
+        if (mStyle.mCheckIndicator == 0)
+            return null;
+        Drawable indicator = ContextCompat.getDrawable(mContext, mStyle.mCheckIndicator);
+        if (indicator == null)
+            return null;
+        indicator.setState(checked ? new int[]{android.R.attr.state_enabled, android.R.attr.state_checked}
+                : new int[]{android.R.attr.state_enabled});
+        mCreatedDrawables++;
+        Drawable current = indicator.getCurrent();
+        if (checked) {
+            mCheckedIndicator = current.getConstantState();
+        } else {
+            mUncheckedIndicator = current.getConstantState();
+        }
+        return current;
+    }
+}
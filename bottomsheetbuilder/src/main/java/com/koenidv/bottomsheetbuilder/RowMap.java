@@ -0,0 +1,88 @@
+package com.koenidv.bottomsheetbuilder;
+
+/**
+ * Maps the rows of a sectioned list to item positions and sections, and back.
+ * Section headers and dividers are rows of their own, so grouped items don't need nested layouts.
+ * All mappings are computed once into arrays, every lookup is O(1).
+ * This class does not depend on any Android classes
+ */
+final class RowMap {
+
+    static final int TYPE_ITEM = 0;
+    static final int TYPE_HEADER = 1;
+    static final int TYPE_DIVIDER = 2;
+
+    private final int[] mRowTypes;
+    private final int[] mRowItems;
+    private final int[] mRowSections;
+    private final int[] mItemRows;
+    private final int[] mSectionRows;
+
+    RowMap(SheetItems items) {
+        int itemCount = items.size();
+        int sectionCount = items.getSectionCount();
+        int rowCount = itemCount + sectionCount;
+        mRowTypes = new int[rowCount];
+        mRowItems = new int[rowCount];
+        mRowSections = new int[rowCount];
+        mItemRows = new int[itemCount];
+        mSectionRows = new int[sectionCount];
+
+        int row = 0;
+        int section = 0;
+        for (int position = 0; position <= itemCount; position++) {
+            // A section's header row comes right before its first item
+            while (section < sectionCount && items.getSectionStart(section) == position) {
+                mRowTypes[row] = items.isDivider(section) ? TYPE_DIVIDER : TYPE_HEADER;
+                mRowItems[row] = -1;
+                mRowSections[row] = section;
+                mSectionRows[section] = row;
+                row++;
+                section++;
+            }
+            if (position == itemCount) break;
+            mRowTypes[row] = TYPE_ITEM;
+            mRowItems[row] = position;
+            // Items before the first section don't belong to any
+            mRowSections[row] = section - 1;
+            mItemRows[position] = row;
+            row++;
+        }
+    }
+
+    int getRowCount() {
+        return mRowTypes.length;
+    }
+
+    /**
+     * @return {@link #TYPE_ITEM}, {@link #TYPE_HEADER} or {@link #TYPE_DIVIDER}
+     */
+    int getRowType(int row) {
+        return mRowTypes[row];
+    }
+
+    /**
+     * @return The item position shown in a row, -1 for headers and dividers
+     */
+    int getItemPosition(int row) {
+        return mRowItems[row];
+    }
+
+    /**
+     * @return The section a row belongs to, -1 for items before the first section
+     */
+    int getSection(int row) {
+        return mRowSections[row];
+    }
+
+    int getItemRow(int position) {
+        return mItemRows[position];
+    }
+
+    /**
+     * @return The row of a section's header or divider
+     */
+    int getSectionRow(int section) {
+        return mSectionRows[section];
+    }
+}
@@ -0,0 +1,142 @@
+package com.koenidv.bottomsheetbuilder;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
+import android.os.Build;
+import android.os.Bundle;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * App-wide pool of item rows returned by dismissed BottomSheets.
+ * Rows are pooled per context, as they are styled by its theme, and dropped when their Activity is destroyed.
+ * Has to be used from the main thread only
+ */
+final class RowPool {
+
+    private static final int MAX_SIZE = 64;
+
+    private static final Map<Context, Rows> sPool = new HashMap<>();
+    private static int sSize = 0;
+    private static int sHits = 0;
+    private static int sMisses = 0;
+    private static boolean sCallbacksRegistered = false;
+
+    private RowPool() {
+    }
+
+    /**
+     * Takes a pooled row for a context
+     *
+     * @param style The current style of the context, rows styled differently are dropped
+     * @return The row or null if there is none
+     */
+    static TextView acquire(Context context, StyleCache.Style style) {
+        Rows rows = sPool.get(context);
+        if (rows != null && rows.mStyle != style) {
+            sPool.remove(context);
+            sSize -= rows.mRows.size();
+            rows = null;
+        }
+        if (rows == null || rows.mRows.isEmpty()) {
+            sMisses++;
+            return null;
+        }
+        sHits++;
+        sSize--;
+        return rows.mRows.remove(rows.mRows.size() - 1);
+    }
+
+    /**
+     * Returns a row that has been removed from its parent. Listeners, icon and text are cleared
+     */
+    static void release(Context context, StyleCache.Style style, TextView row) {
+        if (sSize >= MAX_SIZE) return;
+        Activity activity = BottomSheetSpec.findActivity(context);
+        if (activity == null || activity.isFinishing()
+                || (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1 && activity.isDestroyed()))
+            return;
+        if (!sCallbacksRegistered) {
+            activity.getApplication().registerActivityLifecycleCallbacks(new ReleaseOnDestroy());
+            sCallbacksRegistered = true;
+        }
+        row.setOnClickListener(null);
+        row.setOnTouchListener(null);
+        row.setCompoundDrawables(null, null, null, null);
+        row.setText(null);
+        row.setTag(null);
+        Rows rows = sPool.get(context);
+        if (rows == null || rows.mStyle != style) {
+            if (rows != null) sSize -= rows.mRows.size();
+            rows = new Rows(style);
+            sPool.put(context, rows);
+        }
+        rows.mRows.add(row);
+        sSize++;
+    }
+
+    static int getHits() {
+        return sHits;
+    }
+
+    static int getMisses() {
+        return sMisses;
+    }
+
+    static void clear() {
+        sPool.clear();
+        sSize = 0;
+    }
+
+    private static final class Rows {
+        final StyleCache.Style mStyle;
+        final ArrayList<TextView> mRows = new ArrayList<>();
+
+        Rows(StyleCache.Style style) {
+            mStyle = style;
+        }
+    }
+
+    private static final class ReleaseOnDestroy implements Application.ActivityLifecycleCallbacks {
+        @Override
+        public void onActivityDestroyed(Activity activity) {
+            Iterator<Map.Entry<Context, Rows>> iterator = sPool.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Context, Rows> entry = iterator.next();
+                if (BottomSheetSpec.findActivity(entry.getKey()) == activity) {
+                    sSize -= entry.getValue().mRows.size();
+                    iterator.remove();
+                }
+            }
+        }
+
+        @Override
+        public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+        }
+
+        @Override
+        public void onActivityStarted(Activity activity) {
+        }
+
+        @Override
+        public void onActivityResumed(Activity activity) {
+        }
+
+        @Override
+        public void onActivityPaused(Activity activity) {
+        }
+
+        @Override
+        public void onActivityStopped(Activity activity) {
+        }
+
+        @Override
+        public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+        }
+    }
+}
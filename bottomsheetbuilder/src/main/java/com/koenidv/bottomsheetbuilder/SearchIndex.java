@@ -0,0 +1,117 @@
+package com.koenidv.bottomsheetbuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * A sorted index of the words in the item labels, used to find items by the beginnings of their words.
+ * Building and querying don't depend on any Android classes and can happen on any thread
+ */
+final class SearchIndex {
+
+    private final String[] mTokens;
+    private final int[] mPositions;
+    private final int mItemCount;
+
+    private SearchIndex(String[] tokens, int[] positions, int itemCount) {
+        mTokens = tokens;
+        mPositions = positions;
+        mItemCount = itemCount;
+    }
+
+    /**
+     * Builds the index for a list of labels
+     *
+     * @param labels The labels by item position, null entries are never found
+     */
+    static SearchIndex build(String[] labels) {
+        final ArrayList<String> tokens = new ArrayList<>();
+        ArrayList<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < labels.length; i++) {
+            if (labels[i] == null) continue;
+            for (String token : tokenize(labels[i])) {
+                tokens.add(token);
+                positions.add(i);
+            }
+        }
+        Integer[] order = new Integer[tokens.size()];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return tokens.get(a).compareTo(tokens.get(b));
+            }
+        });
+        String[] sortedTokens = new String[order.length];
+        int[] sortedPositions = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedTokens[i] = tokens.get(order[i]);
+            sortedPositions[i] = positions.get(order[i]);
+        }
+        return new SearchIndex(sortedTokens, sortedPositions, labels.length);
+    }
+
+    /**
+     * Finds the items which have a word starting with every word of the query
+     *
+     * @return The matching positions in ascending order, or null if the query is empty
+     */
+    int[] query(String query) {
+        ArrayList<String> queryTokens = tokenize(query);
+        if (queryTokens.isEmpty()) return null;
+        BitSet result = null;
+        BitSet matches = new BitSet(mItemCount);
+        for (String queryToken : queryTokens) {
+            matches.clear();
+            for (int i = lowerBound(queryToken); i < mTokens.length && mTokens[i].startsWith(queryToken); i++)
+                matches.set(mPositions[i]);
+            if (result == null) {
+                result = (BitSet) matches.clone();
+            } else {
+                result.and(matches);
+            }
+        }
+        int[] positions = new int[result.cardinality()];
+        for (int i = 0, position = result.nextSetBit(0); position >= 0; i++, position = result.nextSetBit(position + 1))
+            positions[i] = position;
+        return positions;
+    }
+
+    /**
+     * @return The index of the first token that is not smaller than the key
+     */
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = mTokens.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mTokens[mid].compareTo(key) < 0)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Splits a text into lower case words
+     */
+    private static ArrayList<String> tokenize(String text) {
+        ArrayList<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean letter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,382 @@
+package com.koenidv.bottomsheetbuilder;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Compact storage for the items of a BottomSheet.
+ * Texts, icons, colors and flags are kept in parallel arrays, so no view has to exist per item.
+ * Texts can be stored as resource ids and resolved later.
+ * The selection of a multi-select sheet is a bit set, so selecting many items doesn't allocate per item.
+ * Sections are stored as the positions of their first items, see {@link RowMap} for the rows they result in.
+ * This class does not depend on any Android classes
+ */
+final class SheetItems {
+
+    /**
+     * The item can't be clicked and is shown greyed out
+     */
+    static final int FLAG_DISABLED = 1;
+
+    /**
+     * The item has no stable id and can't be matched to an item of another list
+     */
+    static final long NO_ID = -1;
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private long[] mIds = new long[INITIAL_CAPACITY];
+    private String[] mTexts = new String[INITIAL_CAPACITY];
+    private int[] mTextRes = new int[INITIAL_CAPACITY];
+    private int[] mIcons = new int[INITIAL_CAPACITY];
+    private String[] mIconUris = new String[INITIAL_CAPACITY];
+    private int[] mColors = new int[INITIAL_CAPACITY];
+    private int[] mFlags = new int[INITIAL_CAPACITY];
+    private final BitSet mSelected = new BitSet();
+    private int mSize = 0;
+
+    private int[] mSectionStarts = new int[0];
+    private String[] mSectionTexts = new String[0];
+    private int[] mSectionTextRes = new int[0];
+    private int mSectionCount = 0;
+
+    /**
+     * Appends an item
+     *
+     * @param text  The text of the item
+     * @param icon  The icon's resource id, 0 for none
+     * @param color The color of the text and icon
+     * @return The position of the new item
+     */
+    int add(String text, int icon, int color) {
+        return add(text, 0, icon, color);
+    }
+
+    /**
+     * Appends an item
+     *
+     * @param text    The text of the item, null if it should be resolved from textRes
+     * @param textRes The text's resource id, 0 for none
+     * @param icon    The icon's resource id, 0 for none
+     * @param color   The color of the text and icon
+     * @return The position of the new item
+     */
+    int add(String text, int textRes, int icon, int color) {
+        ensureCapacity(mSize + 1);
+        mIds[mSize] = NO_ID;
+        mTexts[mSize] = text;
+        mTextRes[mSize] = textRes;
+        mIcons[mSize] = icon;
+        mIconUris[mSize] = null;
+        mColors[mSize] = color;
+        mFlags[mSize] = 0;
+        return mSize++;
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    boolean contains(int position) {
+        return position >= 0 && position < mSize;
+    }
+
+    long getId(int position) {
+        return mIds[position];
+    }
+
+    void setId(int position, long id) {
+        mIds[position] = id;
+    }
+
+    /**
+     * @return Whether both items have the same stable id
+     */
+    boolean isSameItem(int position, SheetItems other, int otherPosition) {
+        return mIds[position] != NO_ID && mIds[position] == other.mIds[otherPosition];
+    }
+
+    /**
+     * @return Whether both items would be shown the same
+     */
+    boolean hasSameContent(int position, SheetItems other, int otherPosition) {
+        if (mIcons[position] != other.mIcons[otherPosition]
+                || !equals(mIconUris[position], other.mIconUris[otherPosition])
+                || mColors[position] != other.mColors[otherPosition]
+                || mFlags[position] != other.mFlags[otherPosition]
+                || mTextRes[position] != other.mTextRes[otherPosition])
+            return false;
+        // Texts of resources might not have been resolved yet, the resource id is enough then
+        return mTextRes[position] != 0 || equals(mTexts[position], other.mTexts[otherPosition]);
+    }
+
+    /**
+     * @return The text, null if it has not been resolved from its resource id yet
+     */
+    String getText(int position) {
+        return mTexts[position];
+    }
+
+    int getTextRes(int position) {
+        return mTextRes[position];
+    }
+
+    void setText(int position, String text) {
+        mTexts[position] = text;
+    }
+
+    int getIcon(int position) {
+        return mIcons[position];
+    }
+
+    int getColor(int position) {
+        return mColors[position];
+    }
+
+    int getFlags(int position) {
+        return mFlags[position];
+    }
+
+    boolean hasFlag(int position, int flag) {
+        return (mFlags[position] & flag) != 0;
+    }
+
+    /**
+     * @return The URI of an icon loaded by {@link BitmapIconCache}, null if the item has an icon resource or none
+     */
+    String getIconUri(int position) {
+        return mIconUris[position];
+    }
+
+    /**
+     * Sets an icon resource, replacing an icon URI
+     */
+    void setIcon(int position, int icon) {
+        mIcons[position] = icon;
+        mIconUris[position] = null;
+    }
+
+    /**
+     * Sets the URI of an icon, replacing an icon resource
+     */
+    void setIconUri(int position, String iconUri) {
+        mIconUris[position] = iconUri;
+        mIcons[position] = 0;
+    }
+
+    void setColor(int position, int color) {
+        mColors[position] = color;
+    }
+
+    void setFlag(int position, int flag, boolean set) {
+        if (set)
+            mFlags[position] |= flag;
+        else
+            mFlags[position] &= ~flag;
+    }
+
+    /**
+     * Starts a section before the next item that is added
+     *
+     * @param text    The title of the section, null if it should be resolved from textRes
+     * @param textRes The title's resource id. If both are empty, the section only shows a divider
+     * @return The index of the new section
+     */
+    int addSection(String text, int textRes) {
+        if (mSectionCount == mSectionStarts.length) {
+            int capacity = Math.max(INITIAL_CAPACITY, mSectionCount * 2);
+            mSectionStarts = Arrays.copyOf(mSectionStarts, capacity);
+            mSectionTexts = Arrays.copyOf(mSectionTexts, capacity);
+            mSectionTextRes = Arrays.copyOf(mSectionTextRes, capacity);
+        }
+        mSectionStarts[mSectionCount] = mSize;
+        mSectionTexts[mSectionCount] = text;
+        mSectionTextRes[mSectionCount] = textRes;
+        return mSectionCount++;
+    }
+
+    int getSectionCount() {
+        return mSectionCount;
+    }
+
+    /**
+     * @return The position of the first item of a section, sections are sorted by it
+     */
+    int getSectionStart(int section) {
+        return mSectionStarts[section];
+    }
+
+    String getSectionText(int section) {
+        return mSectionTexts[section];
+    }
+
+    int getSectionTextRes(int section) {
+        return mSectionTextRes[section];
+    }
+
+    /**
+     * @return Whether a section has no title and only shows a divider
+     */
+    boolean isDivider(int section) {
+        return mSectionTexts[section] == null && mSectionTextRes[section] == 0;
+    }
+
+    boolean isSelected(int position) {
+        return mSelected.get(position);
+    }
+
+    void setSelected(int position, boolean selected) {
+        mSelected.set(position, selected);
+    }
+
+    /**
+     * Selects or deselects a range of items. Disabled items can't be tapped, so they are skipped
+     *
+     * @param changed Receives the positions whose selection has changed
+     */
+    void setSelected(int fromPosition, int toPosition, boolean selected, BitSet changed) {
+        BitSet before = mSelected.get(fromPosition, toPosition);
+        mSelected.set(fromPosition, toPosition, selected);
+        for (int i = fromPosition; i < toPosition; i++) {
+            if ((mFlags[i] & FLAG_DISABLED) != 0)
+                mSelected.set(i, before.get(i - fromPosition));
+        }
+        before.xor(mSelected.get(fromPosition, toPosition));
+        // Bits of the range are now the changed positions, relative to its start
+        if (fromPosition == 0) {
+            changed.or(before);
+            return;
+        }
+        for (int i = before.nextSetBit(0); i >= 0; i = before.nextSetBit(i + 1))
+            changed.set(fromPosition + i);
+    }
+
+    /**
+     * Selects all unselected items and deselects all selected items, except for disabled items
+     *
+     * @param changed Receives the positions whose selection has changed
+     */
+    void invertSelection(BitSet changed) {
+        for (int i = 0; i < mSize; i++) {
+            if ((mFlags[i] & FLAG_DISABLED) == 0) {
+                mSelected.flip(i);
+                changed.set(i);
+            }
+        }
+    }
+
+    /**
+     * Deselects all items, including disabled ones
+     *
+     * @param changed Receives the positions whose selection has changed
+     */
+    void clearSelection(BitSet changed) {
+        changed.or(mSelected);
+        mSelected.clear();
+    }
+
+    /**
+     * Takes over the selection of another list with the same items
+     *
+     * @param changed Receives the positions whose selection has changed
+     */
+    void setSelection(SheetItems other, BitSet changed) {
+        // The difference of both selections are the changed positions
+        mSelected.xor(other.mSelected);
+        changed.or(mSelected);
+        mSelected.clear();
+        mSelected.or(other.mSelected);
+    }
+
+    int getSelectedCount() {
+        return mSelected.cardinality();
+    }
+
+    /**
+     * @return The positions of all selected items in ascending order
+     */
+    int[] getSelectedPositions() {
+        int[] positions = new int[mSelected.cardinality()];
+        int index = 0;
+        for (int i = mSelected.nextSetBit(0); i >= 0; i = mSelected.nextSetBit(i + 1))
+            positions[index++] = i;
+        return positions;
+    }
+
+    /**
+     * Creates an independent copy, used to freeze the items of a {@link BottomSheetSpec}
+     */
+    SheetItems copy() {
+        SheetItems copy = new SheetItems();
+        copy.replaceWith(this);
+        return copy;
+    }
+
+    /**
+     * Takes over the texts resolved in a copy of these items,
+     * skipping items whose text has been changed since the copy was made
+     */
+    void takeResolvedTexts(SheetItems copy) {
+        int count = Math.min(mSize, copy.mSize);
+        for (int i = 0; i < count; i++) {
+            if (mTexts[i] == null && mTextRes[i] != 0 && mTextRes[i] == copy.mTextRes[i])
+                mTexts[i] = copy.mTexts[i];
+        }
+    }
+
+    /**
+     * Replaces all items with the items of another list
+     */
+    void replaceWith(SheetItems other) {
+        int oldSize = mSize;
+        mSize = 0;
+        ensureCapacity(other.mSize);
+        System.arraycopy(other.mIds, 0, mIds, 0, other.mSize);
+        System.arraycopy(other.mTexts, 0, mTexts, 0, other.mSize);
+        System.arraycopy(other.mTextRes, 0, mTextRes, 0, other.mSize);
+        System.arraycopy(other.mIcons, 0, mIcons, 0, other.mSize);
+        System.arraycopy(other.mIconUris, 0, mIconUris, 0, other.mSize);
+        System.arraycopy(other.mColors, 0, mColors, 0, other.mSize);
+        System.arraycopy(other.mFlags, 0, mFlags, 0, other.mSize);
+        mSelected.clear();
+        mSelected.or(other.mSelected);
+        mSectionStarts = Arrays.copyOf(other.mSectionStarts, other.mSectionCount);
+        mSectionTexts = Arrays.copyOf(other.mSectionTexts, other.mSectionCount);
+        mSectionTextRes = Arrays.copyOf(other.mSectionTextRes, other.mSectionCount);
+        mSectionCount = other.mSectionCount;
+        // Don't keep references to removed texts
+        if (oldSize > other.mSize) {
+            Arrays.fill(mTexts, other.mSize, oldSize, null);
+            Arrays.fill(mIconUris, other.mSize, oldSize, null);
+        }
+        mSize = other.mSize;
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= mTexts.length) return;
+        int newCapacity = Math.max(capacity, mTexts.length * 2);
+        long[] ids = new long[newCapacity];
+        System.arraycopy(mIds, 0, ids, 0, mSize);
+        mIds = ids;
+        String[] texts = new String[newCapacity];
+        System.arraycopy(mTexts, 0, texts, 0, mSize);
+        mTexts = texts;
+        String[] iconUris = new String[newCapacity];
+        System.arraycopy(mIconUris, 0, iconUris, 0, mSize);
+        mIconUris = iconUris;
+        mTextRes = grow(mTextRes, newCapacity);
+        mIcons = grow(mIcons, newCapacity);
+        mColors = grow(mColors, newCapacity);
+        mFlags = grow(mFlags, newCapacity);
+    }
+
+    private int[] grow(int[] array, int capacity) {
+        int[] grown = new int[capacity];
+        System.arraycopy(array, 0, grown, 0, mSize);
+        return grown;
+    }
+}
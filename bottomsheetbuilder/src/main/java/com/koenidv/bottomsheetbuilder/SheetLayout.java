@@ -0,0 +1,62 @@
+package com.koenidv.bottomsheetbuilder;
+
+import android.content.Context;
+import android.view.View;
+import android.widget.LinearLayout;
+
+/**
+ * The vertical content of a BottomSheet.
+ * If every child has a fixed height, the content height is known without measuring
+ * and each child is measured exactly once with its final size
+ */
+final class SheetLayout extends LinearLayout {
+
+    private boolean mFixedHeights = false;
+
+    SheetLayout(Context context) {
+        super(context);
+        setOrientation(VERTICAL);
+    }
+
+    /**
+     * @param fixedHeights Whether every child has an exact height in its layout params
+     */
+    void setFixedHeights(boolean fixedHeights) {
+        if (mFixedHeights == fixedHeights) return;
+        mFixedHeights = fixedHeights;
+        requestLayout();
+    }
+
+    /**
+     * @return The height of the content from the layout params of its children,
+     * or -1 if not every child has a fixed height
+     */
+    int getContentHeight() {
+        if (!mFixedHeights) return -1;
+        int height = getPaddingTop() + getPaddingBottom();
+        for (int i = 0; i < getChildCount(); i++) {
+            View child = getChildAt(i);
+            if (child.getVisibility() != GONE)
+                height += child.getLayoutParams().height;
+        }
+        return height;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        if (!mFixedHeights) {
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+            return;
+        }
+        int width = getDefaultSize(getSuggestedMinimumWidth(), widthMeasureSpec);
+        int childWidthSpec = MeasureSpec.makeMeasureSpec(
+                Math.max(0, width - getPaddingLeft() - getPaddingRight()), MeasureSpec.EXACTLY);
+        for (int i = 0; i < getChildCount(); i++) {
+            View child = getChildAt(i);
+            if (child.getVisibility() != GONE)
+                child.measure(childWidthSpec,
+                        MeasureSpec.makeMeasureSpec(child.getLayoutParams().height, MeasureSpec.EXACTLY));
+        }
+        setMeasuredDimension(width, resolveSize(getContentHeight(), heightMeasureSpec));
+    }
+}
@@ -0,0 +1,162 @@
+package com.koenidv.bottomsheetbuilder;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
+
+import java.util.concurrent.Executor;
+
+import androidx.recyclerview.widget.DiffUtil;
+
+/**
+ * Filters the rows of an {@link ItemAdapter} by the text of a search field.
+ * The {@link SearchIndex} is built and queried on an executor,
+ * only the rows that appear or disappear are updated on the main thread
+ */
+final class SheetSearch implements TextWatcher {
+
+    private final Context mContext;
+    private final SheetItems mItems;
+    private final ItemAdapter mAdapter;
+    private final Executor mExecutor;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private SearchIndex mIndex;
+    private String mQuery = "";
+    // Incremented for every index and query, results of older ones are dropped
+    private int mGeneration = 0;
+
+    SheetSearch(Context context, SheetItems items, ItemAdapter adapter, Executor executor) {
+        mContext = context;
+        mItems = items;
+        mAdapter = adapter;
+        mExecutor = executor;
+        buildIndex();
+    }
+
+    /**
+     * Rebuilds the index after the items have been replaced.
+     * A filtered list shows all items until the query has been applied to the new items
+     */
+    void onItemsReplaced() {
+        if (mAdapter.getPositions() != null) {
+            mAdapter.setPositions(null);
+            mAdapter.notifyDataSetChanged();
+        }
+        buildIndex();
+    }
+
+    /**
+     * @return Whether only some of the items are shown
+     */
+    boolean isFiltered() {
+        return mAdapter.getPositions() != null;
+    }
+
+    private void buildIndex() {
+        final int generation = ++mGeneration;
+        // Copying the arrays is cheap, texts are resolved in the background
+        final SheetItems snapshot = mItems.copy();
+        mIndex = null;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                String[] labels = new String[snapshot.size()];
+                for (int i = 0; i < labels.length; i++)
+                    labels[i] = ResourcePreparer.getText(mContext, snapshot, i);
+                final SearchIndex index = SearchIndex.build(labels);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mGeneration) return;
+                        mIndex = index;
+                        if (mQuery.trim().length() > 0)
+                            filter(mQuery);
+                    }
+                });
+            }
+        });
+    }
+
+    private void filter(final String query) {
+        mQuery = query;
+        // Applied as soon as the index is ready
+        if (mIndex == null) return;
+        final SearchIndex index = mIndex;
+        final int generation = ++mGeneration;
+        final int[] current = mAdapter.getPositions();
+        final int itemCount = mItems.size();
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final int[] positions = index.query(query);
+                final DiffUtil.DiffResult diff = DiffUtil.calculateDiff(
+                        new PositionDiff(current, positions, itemCount), false);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mGeneration) return;
+                        mAdapter.setPositions(positions);
+                        if (mAdapter.hasSections()) {
+                            // Headers appear or disappear, the diff only covers items
+                            mAdapter.notifyDataSetChanged();
+                        } else {
+                            diff.dispatchUpdatesTo(mAdapter);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    public void afterTextChanged(Editable s) {
+        filter(s.toString());
+    }
+
+    @Override
+    public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+    }
+
+    @Override
+    public void onTextChanged(CharSequence s, int start, int before, int count) {
+    }
+
+    /**
+     * Compares two filtered lists of item positions, null meaning all items
+     */
+    private static final class PositionDiff extends DiffUtil.Callback {
+        private final int[] mOld;
+        private final int[] mNew;
+        private final int mItemCount;
+
+        PositionDiff(int[] oldPositions, int[] newPositions, int itemCount) {
+            mOld = oldPositions;
+            mNew = newPositions;
+            mItemCount = itemCount;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOld != null ? mOld.length : mItemCount;
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNew != null ? mNew.length : mItemCount;
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return (mOld != null ? mOld[oldItemPosition] : oldItemPosition)
+                    == (mNew != null ? mNew[newItemPosition] : newItemPosition);
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.koenidv.bottomsheetbuilder;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.graphics.Typeface;
+import android.os.Build;
+import android.util.DisplayMetrics;
+import android.util.TypedValue;
+
+import java.util.WeakHashMap;
+
+import androidx.annotation.NonNull;
+
+/**
+ * App-wide cache for the theme attributes and dimensions used by every sheet.
+ * Values are resolved once per theme and configuration and dropped on configuration changes
+ */
+final class StyleCache {
+
+    // Sorted by attribute id, as required by obtainStyledAttributes
+    private static final int[] TEXT_APPEARANCE_ATTRS = {
+            android.R.attr.textSize,
+            android.R.attr.typeface,
+            android.R.attr.textStyle,
+            android.R.attr.fontFamily
+    };
+
+    private static final WeakHashMap<Resources.Theme, Style> sStyles = new WeakHashMap<>();
+    private static boolean sCallbacksRegistered = false;
+
+    private StyleCache() {
+    }
+
+    /**
+     * Returns the resolved style for the theme and configuration of a context.
+     * Only the first call for a theme and configuration resolves anything
+     */
+    static synchronized Style get(Context context) {
+        if (!sCallbacksRegistered) {
+            context.getApplicationContext().registerComponentCallbacks(new TrimCallbacks());
+            sCallbacksRegistered = true;
+        }
+        Resources.Theme theme = context.getTheme();
+        Configuration configuration = context.getResources().getConfiguration();
+        Style style = sStyles.get(theme);
+        if (style == null || !style.mConfiguration.equals(configuration)) {
+            style = new Style(context);
+            sStyles.put(theme, style);
+        }
+        return style;
+    }
+
+    static synchronized void clear() {
+        sStyles.clear();
+    }
+
+    /**
+     * The resolved values for one theme and configuration
+     */
+    static final class Style {
+        final Configuration mConfiguration;
+        final int mItemHeight;
+        final int mItemPadding;
+        final int mDefaultColor;
+        final int mItemBackground;
+        final float mItemTextSize;
+        final Typeface mItemTypeface;
+        final int mCheckIndicator;
+        final int mDivider;
+        final int mDividerHeight;
+        final int mIconSize;
+
+        private Style(Context context) {
+            Resources resources = context.getResources();
+            DisplayMetrics metrics = resources.getDisplayMetrics();
+            mConfiguration = new Configuration(resources.getConfiguration());
+            mItemHeight = (int) (48 * metrics.density + 0.5f);
+            mItemPadding = (int) (16 * metrics.density + 0.5f);
+            mDefaultColor = resources.getColor(android.R.color.primary_text_light);
+
+            TypedValue outValue = new TypedValue();
+            context.getTheme().resolveAttribute(android.R.attr.selectableItemBackground,
+                    outValue, true);
+            mItemBackground = outValue.resourceId;
+            context.getTheme().resolveAttribute(android.R.attr.listChoiceIndicatorMultiple,
+                    outValue, true);
+            mCheckIndicator = outValue.resourceId;
+            context.getTheme().resolveAttribute(android.R.attr.listDivider, outValue, true);
+            mDivider = outValue.resourceId;
+            mDividerHeight = Math.max(1, (int) metrics.density);
+            mIconSize = (int) (24 * metrics.density + 0.5f);
+
+            TypedArray appearance = context.obtainStyledAttributes(
+                    android.R.style.TextAppearance_DeviceDefault_Widget_PopupMenu, TEXT_APPEARANCE_ATTRS);
+            mItemTextSize = appearance.getDimension(0, 16 * metrics.scaledDensity);
+            int typefaceIndex = appearance.getInt(1, 0);
+            int textStyle = appearance.getInt(2, Typeface.NORMAL);
+            String fontFamily = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN
+                    ? appearance.getString(3) : null;
+            appearance.recycle();
+            mItemTypeface = createTypeface(fontFamily, typefaceIndex, textStyle);
+        }
+
+        private static Typeface createTypeface(String fontFamily, int typefaceIndex, int textStyle) {
+            if (fontFamily != null)
+                return Typeface.create(fontFamily, textStyle);
+            switch (typefaceIndex) {
+                case 1:
+                    return Typeface.create(Typeface.SANS_SERIF, textStyle);
+                case 2:
+                    return Typeface.create(Typeface.SERIF, textStyle);
+                case 3:
+                    return Typeface.create(Typeface.MONOSPACE, textStyle);
+                default:
+                    return Typeface.defaultFromStyle(textStyle);
+            }
+        }
+    }
+
+    /**
+     * Drops resolved styles on configuration changes and all caches when memory is low
+     */
+    private static final class TrimCallbacks implements ComponentCallbacks2 {
+        @Override
+        public void onConfigurationChanged(@NonNull Configuration newConfig) {
+            clear();
+        }
+
+        @Override
+        public void onLowMemory() {
+            clear();
+            IconCache.clear();
+            IconAtlas.clear();
+            BitmapIconCache.clear();
+            RowPool.clear();
+            MenuCache.clear();
+        }
+
+        @Override
+        public void onTrimMemory(int level) {
+            if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+                clear();
+                IconCache.clear();
+                IconAtlas.clear();
+                BitmapIconCache.clear();
+                RowPool.clear();
+                MenuCache.clear();
+            }
+        }
+    }
+}
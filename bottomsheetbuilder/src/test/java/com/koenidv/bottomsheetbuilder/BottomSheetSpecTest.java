@@ -0,0 +1,81 @@
+package com.koenidv.bottomsheetbuilder;
+
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowDialog;
+import org.robolectric.shadows.ShadowLooper;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that every showing of a spec starts from the spec's items
+ */
+@RunWith(RobolectricTestRunner.class)
+public class BottomSheetSpecTest {
+
+    private int[] mSelected;
+
+    private final BottomSheetBuilder.onItemsSelectedListener mSelectedListener =
+            new BottomSheetBuilder.onItemsSelectedListener() {
+                @Override
+                public void onItemsSelected(int[] positions, String tag) {
+                    mSelected = positions;
+                }
+            };
+
+    @Test
+    public void show_startsWithSelectionOfSpec() {
+        TestActivity activity = TestActivity.start().get();
+        BottomSheetSpec spec = new BottomSheetBuilder(activity, "spec")
+                .setMultiSelect(true)
+                .addItems("First", "Second", "Third")
+                .setItemSelected(true, 1)
+                .build();
+
+        showAndConfirm(activity, spec, true);
+        assertArrayEquals(new int[]{0, 1}, mSelected);
+
+        // The first item has only been selected while the sheet was shown before
+        showAndConfirm(activity, spec, false);
+        assertArrayEquals(new int[]{1}, mSelected);
+    }
+
+    /**
+     * Shows the spec, optionally toggles the first item and confirms the selection
+     */
+    private void showAndConfirm(TestActivity activity, BottomSheetSpec spec, boolean toggleFirst) {
+        mSelected = null;
+        spec.show(activity, null, null, mSelectedListener, null, null);
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        View content = ShadowDialog.getLatestDialog().getWindow().getDecorView();
+        content.measure(View.MeasureSpec.makeMeasureSpec(1080, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(1920, View.MeasureSpec.AT_MOST));
+        content.layout(0, 0, content.getMeasuredWidth(), content.getMeasuredHeight());
+        if (toggleFirst)
+            findView(content, RecyclerView.class).getChildAt(0).performClick();
+        findView(content, Button.class).performClick();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        assertFalse(ShadowDialog.getLatestDialog().isShowing());
+    }
+
+    private static <T extends View> T findView(View view, Class<T> type) {
+        if (type.isInstance(view))
+            return type.cast(view);
+        if (view instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) view;
+            for (int i = 0; i < group.getChildCount(); i++) {
+                T found = findView(group.getChildAt(i), type);
+                if (found != null)
+                    return found;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,64 @@
+package com.koenidv.bottomsheetbuilder;
+
+import android.app.Activity;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.shadows.ShadowDialog;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.lang.ref.WeakReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that a builder bound to a LifecycleOwner doesn't keep its Activity after it has been destroyed
+ */
+@RunWith(RobolectricTestRunner.class)
+public class LifecycleReleaseTest {
+
+    // Kept on purpose, like a builder kept in a field by an app
+    private BottomSheetBuilder mBuilder;
+
+    @Test
+    public void destroy_releasesActivity() {
+        WeakReference<Activity> activity = showAndDestroy();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        // Robolectric keeps every shown dialog, and with it the Activity
+        ShadowDialog.reset();
+        for (int i = 0; i < 20 && activity.get() != null; i++) {
+            System.gc();
+            System.runFinalization();
+        }
+        assertNull("The destroyed Activity is still referenced", activity.get());
+
+        // Showing a released builder is ignored
+        mBuilder.show();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        assertNull("A released builder has shown a dialog", ShadowDialog.getLatestDialog());
+        assertTrue(ShadowDialog.getShownDialogs().isEmpty());
+    }
+
+    /**
+     * Shows a sheet and destroys its Activity, without keeping a reference to it in the calling frame
+     */
+    private WeakReference<Activity> showAndDestroy() {
+        ActivityController<TestActivity> controller = TestActivity.start();
+        TestActivity activity = controller.get();
+        mBuilder = new BottomSheetBuilder(activity, "lifecycle")
+                .bindTo(activity)
+                .addItems("First", "Second")
+                .setIcon(android.R.drawable.ic_menu_share, 0)
+                .setOnItemClickListener(new BottomSheetBuilder.onItemClickListener() {
+                    @Override
+                    public void onItemClicked(View view, int which, String tag) {
+                    }
+                });
+        mBuilder.show();
+        controller.pause().stop().destroy();
+        return new WeakReference<Activity>(activity);
+    }
+}
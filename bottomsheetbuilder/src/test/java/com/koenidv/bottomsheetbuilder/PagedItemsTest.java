@@ -0,0 +1,54 @@
+package com.koenidv.bottomsheetbuilder;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks how pages of an item source are loaded
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PagedItemsTest {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private int mLoads = 0;
+
+    @Test
+    public void failedFirstPage_isRetried() {
+        BottomSheetItemSource source = new BottomSheetItemSource() {
+            @Override
+            public List<BottomSheetItem> loadPage(int page, int pageSize) {
+                if (mLoads++ < 2)
+                    throw new IllegalStateException("Offline");
+                return Arrays.asList(new BottomSheetItem(1, "First"), new BottomSheetItem(2, "Second"));
+            }
+        };
+        PagedItems items = new PagedItems(source, DIRECT, 10, 2, 0, 0, "paged");
+        ShadowLooper.runUiThreadTasks();
+        assertEquals(1, mLoads);
+        assertEquals(0, items.size());
+
+        // No row is bound that could request the page again, it is retried after a delay
+        ShadowLooper.idleMainLooper(1, TimeUnit.SECONDS);
+        assertEquals(2, mLoads);
+        assertEquals(0, items.size());
+        ShadowLooper.idleMainLooper(2, TimeUnit.SECONDS);
+        assertEquals(3, mLoads);
+        assertEquals(2, items.size());
+        assertEquals(2, items.getId(1));
+    }
+}
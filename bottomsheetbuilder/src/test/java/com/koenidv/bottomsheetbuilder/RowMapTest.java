@@ -0,0 +1,45 @@
+package com.koenidv.bottomsheetbuilder;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for mapping rows of a sectioned list, no Android classes are needed
+ */
+public class RowMapTest {
+    @Test
+    public void sections_becomeRowsBeforeTheirItems() {
+        SheetItems items = new SheetItems();
+        items.add("Loose", 0, 0);
+        items.addSection("First", 0);
+        items.add("A", 0, 0);
+        items.add("B", 0, 0);
+        items.addSection(null, 0);
+        items.add("C", 0, 0);
+        RowMap map = new RowMap(items);
+
+        assertEquals(6, map.getRowCount());
+        assertEquals(RowMap.TYPE_ITEM, map.getRowType(0));
+        assertEquals(-1, map.getSection(0));
+        assertEquals(RowMap.TYPE_HEADER, map.getRowType(1));
+        assertEquals(-1, map.getItemPosition(1));
+        assertEquals(1, map.getItemPosition(2));
+        assertEquals(0, map.getSection(3));
+        assertEquals(RowMap.TYPE_DIVIDER, map.getRowType(4));
+        assertEquals(4, map.getSectionRow(1));
+        assertEquals(5, map.getItemRow(3));
+        assertEquals(1, map.getSection(5));
+    }
+
+    @Test
+    public void emptySections_areKept() {
+        SheetItems items = new SheetItems();
+        items.addSection("Empty", 0);
+        items.addSection("Also empty", 0);
+        RowMap map = new RowMap(items);
+        assertEquals(2, map.getRowCount());
+        assertEquals(RowMap.TYPE_HEADER, map.getRowType(1));
+        assertEquals(1, map.getSectionRow(1));
+    }
+}
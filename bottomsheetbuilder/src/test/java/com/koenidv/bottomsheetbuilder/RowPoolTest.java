@@ -0,0 +1,37 @@
+package com.koenidv.bottomsheetbuilder;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the rows of a dismissed virtualized sheet are reused by the next sheet
+ */
+@RunWith(RobolectricTestRunner.class)
+public class RowPoolTest {
+
+    @Test
+    public void dismissedVirtualizedSheet_returnsRowsToPool() {
+        TestActivity activity = TestActivity.start().get();
+        BottomSheetBuilder first = createVirtualized(activity);
+        first.show();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        first.dismiss();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+
+        int hits = BottomSheetBuilder.getRowPoolHits();
+        createVirtualized(activity).show();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        assertTrue("No row has been taken from the pool", BottomSheetBuilder.getRowPoolHits() > hits);
+    }
+
+    private static BottomSheetBuilder createVirtualized(TestActivity activity) {
+        String[] items = new String[20];
+        for (int i = 0; i < items.length; i++)
+            items[i] = "Item " + i;
+        return new BottomSheetBuilder(activity, "pool").setVirtualized(true).addItems(items);
+    }
+}
@@ -0,0 +1,31 @@
+package com.koenidv.bottomsheetbuilder;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the search index, no Android classes are needed
+ */
+public class SearchIndexTest {
+    private final SearchIndex mIndex = SearchIndex.build(new String[]{
+            "Share via mail", "Copy link", null, "Open in browser", "Mail merge"});
+
+    @Test
+    public void query_matchesWordPrefixes() {
+        assertArrayEquals(new int[]{0, 4}, mIndex.query("MA"));
+        assertArrayEquals(new int[]{3}, mIndex.query("bro"));
+        assertArrayEquals(new int[0], mIndex.query("rowser"));
+    }
+
+    @Test
+    public void query_requiresEveryWord() {
+        assertArrayEquals(new int[]{4}, mIndex.query("mail mer"));
+        assertArrayEquals(new int[0], mIndex.query("copy mail"));
+    }
+
+    @Test
+    public void query_emptyMatchesEverything() {
+        assertNull(mIndex.query("  "));
+    }
+}
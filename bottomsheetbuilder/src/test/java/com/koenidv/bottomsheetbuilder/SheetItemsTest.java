@@ -0,0 +1,146 @@
+package com.koenidv.bottomsheetbuilder;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the item model, no Android classes are needed
+ */
+public class SheetItemsTest {
+    @Test
+    public void add_returnsPositions() {
+        SheetItems items = new SheetItems();
+        assertEquals(0, items.add("First", 0, 0xFF000000));
+        assertEquals(1, items.add("Second", 42, 0xFFFF0000));
+        assertEquals(2, items.size());
+        assertEquals("Second", items.getText(1));
+        assertEquals(42, items.getIcon(1));
+        assertEquals(0xFFFF0000, items.getColor(1));
+    }
+
+    @Test
+    public void add_growsBeyondInitialCapacity() {
+        SheetItems items = new SheetItems();
+        for (int i = 0; i < 1000; i++)
+            items.add("Item " + i, i, i);
+        assertEquals(1000, items.size());
+        assertEquals("Item 999", items.getText(999));
+        assertEquals(999, items.getIcon(999));
+        assertFalse(items.contains(1000));
+    }
+
+    @Test
+    public void setFlag_togglesOnlyThatFlag() {
+        SheetItems items = new SheetItems();
+        items.add("Item", 0, 0);
+        items.setFlag(0, SheetItems.FLAG_DISABLED, true);
+        assertTrue(items.hasFlag(0, SheetItems.FLAG_DISABLED));
+        items.setFlag(0, SheetItems.FLAG_DISABLED, false);
+        assertEquals(0, items.getFlags(0));
+    }
+
+    @Test
+    public void isSameItem_comparesIds() {
+        SheetItems before = new SheetItems();
+        before.add("Item", 0, 0);
+        before.setId(0, 7);
+        SheetItems after = new SheetItems();
+        after.add("Renamed", 0, 0);
+        after.add("Other", 0, 0);
+        after.setId(0, 7);
+        assertTrue(before.isSameItem(0, after, 0));
+        assertFalse(before.hasSameContent(0, after, 0));
+        // Items without ids never match
+        assertFalse(after.isSameItem(1, after, 1));
+    }
+
+    @Test
+    public void replaceWith_copiesAllItems() {
+        SheetItems items = new SheetItems();
+        for (int i = 0; i < 20; i++)
+            items.add("Item " + i, i, i);
+        SheetItems other = new SheetItems();
+        other.add("Only", 0, 3, 0xFF00FF00);
+        other.setId(0, 42);
+        other.setFlag(0, SheetItems.FLAG_DISABLED, true);
+        items.replaceWith(other);
+        assertEquals(1, items.size());
+        assertEquals(42, items.getId(0));
+        assertTrue(items.hasSameContent(0, other, 0));
+    }
+
+    @Test
+    public void setSelected_reportsOnlyChangedPositions() {
+        SheetItems items = new SheetItems();
+        for (int i = 0; i < 100; i++)
+            items.add("Item " + i, 0, 0);
+        items.setSelected(3, true);
+        items.setSelected(50, true);
+        BitSet changed = new BitSet();
+        items.setSelected(0, 100, true, changed);
+        assertEquals(98, changed.cardinality());
+        assertFalse(changed.get(3));
+        changed.clear();
+        items.setSelected(40, 60, false, changed);
+        assertEquals(20, changed.cardinality());
+        assertEquals(40, changed.nextSetBit(0));
+        items.invertSelection(new BitSet());
+        assertArrayEquals(new int[]{40, 41, 42}, Arrays.copyOf(items.getSelectedPositions(), 3));
+        assertEquals(20, items.getSelectedCount());
+    }
+
+    @Test
+    public void bulkSelection_skipsDisabledItems() {
+        SheetItems items = new SheetItems();
+        for (int i = 0; i < 4; i++)
+            items.add("Item " + i, 0, 0);
+        items.setFlag(1, SheetItems.FLAG_DISABLED, true);
+        BitSet changed = new BitSet();
+        items.setSelected(0, 4, true, changed);
+        assertArrayEquals(new int[]{0, 2, 3}, items.getSelectedPositions());
+        assertFalse(changed.get(1));
+        changed.clear();
+        items.invertSelection(changed);
+        assertEquals(0, items.getSelectedCount());
+        assertFalse(changed.get(1));
+        items.setSelected(1, true);
+        items.clearSelection(changed);
+        assertEquals(0, items.getSelectedCount());
+        assertTrue(changed.get(1));
+    }
+
+    @Test
+    public void setSelection_takesOverSelectionOfCopy() {
+        SheetItems spec = new SheetItems();
+        for (int i = 0; i < 4; i++)
+            spec.add("Item " + i, 0, 0);
+        spec.setSelected(1, true);
+        SheetItems shown = spec.copy();
+        shown.setSelected(0, true);
+        shown.setSelected(1, false);
+        BitSet changed = new BitSet();
+        shown.setSelection(spec, changed);
+        assertArrayEquals(new int[]{1}, shown.getSelectedPositions());
+        assertEquals(2, changed.cardinality());
+        assertTrue(changed.get(0));
+        assertTrue(changed.get(1));
+    }
+
+    @Test
+    public void takeResolvedTexts_skipsChangedItems() {
+        SheetItems items = new SheetItems();
+        items.add(null, 10, 0, 0);
+        items.add(null, 20, 0, 0);
+        SheetItems copy = items.copy();
+        copy.setText(0, "Resolved");
+        copy.setText(1, "Resolved");
+        items.setText(1, "Changed");
+        items.takeResolvedTexts(copy);
+        assertEquals("Resolved", items.getText(0));
+        assertEquals("Changed", items.getText(1));
+    }
+}
@@ -0,0 +1,27 @@
+package com.koenidv.bottomsheetbuilder;
+
+import android.os.Bundle;
+
+import org.robolectric.Robolectric;
+import org.robolectric.android.controller.ActivityController;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+/**
+ * An Activity with a MaterialComponents theme, which BottomSheetDialog requires
+ */
+public class TestActivity extends AppCompatActivity {
+
+    /**
+     * Creates an Activity and moves it to the resumed state
+     */
+    static ActivityController<TestActivity> start() {
+        return Robolectric.buildActivity(TestActivity.class).setup();
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        setTheme(com.google.android.material.R.style.Theme_MaterialComponents_Light);
+        super.onCreate(savedInstanceState);
+    }
+}